@@ -0,0 +1,7 @@
+@echo off
+rem Starts the intro generator with the AppCDS archive built by "mvn -Pappcds package". Takes the same arguments as
+rem "java -jar ${jar.name}". Keep this script next to the jar and the .jsa.
+set DIR=%~dp0
+set JAVA=java
+if defined JAVA_HOME set JAVA="%JAVA_HOME%\bin\java"
+%JAVA% -Xshare:auto -XX:SharedArchiveFile="%DIR%${cds.archive.name}" %JAVA_OPTS% -cp "%DIR%${jar.name}" com.icf.ecqm.structuredefinition.introgenerator.Main %*
@@ -0,0 +1,9 @@
+#!/bin/sh
+# Starts the intro generator with the AppCDS archive built by "mvn -Pappcds package". Takes the same arguments as
+# "java -jar ${jar.name}". Keep this script next to the jar and the .jsa; the archive only applies to the JVM build it
+# was created with, on any other JVM it is skipped and startup is just as it would be without it.
+DIR=$(cd "$(dirname "$0")" && pwd)
+if [ -n "$JAVA_HOME" ]; then JAVA="$JAVA_HOME/bin/java"; else JAVA=java; fi
+
+exec "$JAVA" -Xshare:auto -XX:SharedArchiveFile="$DIR/${cds.archive.name}" $JAVA_OPTS \
+    -cp "$DIR/${jar.name}" com.icf.ecqm.structuredefinition.introgenerator.Main "$@"
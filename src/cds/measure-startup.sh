@@ -0,0 +1,29 @@
+#!/bin/sh
+# Compares wall-clock time of the plain fat jar with the AppCDS launcher over the sample IG, after
+# "mvn -Pappcds package". Usage: target/measure-startup.sh [runs] (default 10)
+DIR=$(cd "$(dirname "$0")" && pwd)
+RUNS=${1:-10}
+if [ -n "$JAVA_HOME" ]; then JAVA="$JAVA_HOME/bin/java"; else JAVA=java; fi
+IG="$DIR/cds-training/qicore"
+
+# mean and min elapsed milliseconds of RUNS invocations of "$@" inside the sample IG
+measure() {
+    total=0
+    min=
+    i=0
+    while [ $i -lt "$RUNS" ]; do
+        start=$(date +%s%N)
+        (cd "$IG" && "$@" qicore --missing=skip > /dev/null 2>&1)
+        end=$(date +%s%N)
+        elapsed=$(( (end - start) / 1000000 ))
+        total=$((total + elapsed))
+        if [ -z "$min" ] || [ "$elapsed" -lt "$min" ]; then min=$elapsed; fi
+        i=$((i + 1))
+    done
+    echo "mean $((total / RUNS)) ms, min $min ms"
+}
+
+echo "Startup over $RUNS runs of the sample IG (qicore):"
+echo "  java -jar (no CDS):         $(measure "$JAVA" -Xshare:off -jar "$DIR/${jar.name}")"
+echo "  java -jar (JDK CDS only):   $(measure "$JAVA" -jar "$DIR/${jar.name}")"
+echo "  intro-generator.sh (AppCDS): $(measure sh "$DIR/intro-generator.sh")"
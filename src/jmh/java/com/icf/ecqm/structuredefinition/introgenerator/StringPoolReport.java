@@ -0,0 +1,133 @@
+package com.icf.ecqm.structuredefinition.introgenerator;
+
+import com.icf.ecqm.structuredefinition.introgenerator.common.ProfileResult;
+import com.icf.ecqm.structuredefinition.introgenerator.common.StringPool;
+import com.icf.ecqm.structuredefinition.introgenerator.common.SyntheticIgGenerator;
+import com.icf.ecqm.structuredefinition.introgenerator.deqm.DEQMProcessor;
+import com.icf.ecqm.structuredefinition.introgenerator.qicore.QICoreProcessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Heap retained by a run's profile results with and without the {@link StringPool}: generates an IG in which most
+ * elements share their base resource's short description (--inherited-shorts, default 0.7), builds and holds the
+ * results of every profile as a run does until the page or data file is written, and reports the heap still in use
+ * after a full GC for each. Run it with a fixed heap (-Xms = -Xmx) so the GC numbers are comparable.
+ * <p>
+ * Usage: StringPoolReport [--type qicore|qicore-ms|deqm] [--elements N] [--inherited-shorts R] [--seed N] [profileCount]
+ * <br>
+ * ie from Maven: mvn -Pjmh test-compile exec:exec@string-pool -Dstring-pool.args="--type deqm 5000"
+ */
+public class StringPoolReport {
+    //a field rather than a local, so the results are released exactly when the report says so
+    private static List<ProfileResult> held;
+
+    public static void main(String[] args) throws Exception {
+        IgType type = IgType.QICORE;
+        SyntheticIgGenerator.Settings settings = new SyntheticIgGenerator.Settings()
+                .setProfileCount(2000)
+                .setInheritedShortRatio(0.7);
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--")) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + arg);
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "--type":
+                        type = IgType.fromString(value);
+                        break;
+                    case "--elements":
+                        settings.setElementsPerProfile(Integer.parseInt(value));
+                        break;
+                    case "--inherited-shorts":
+                        settings.setInheritedShortRatio(Double.parseDouble(value));
+                        break;
+                    case "--seed":
+                        settings.setSeed(Long.parseLong(value));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            } else {
+                settings.setProfileCount(Integer.parseInt(arg));
+            }
+        }
+
+        Path root = Files.createTempDirectory("string-pool-");
+        try {
+            long bytes = new SyntheticIgGenerator(settings).generate(root.toFile());
+            System.out.println("Type: " + type + ", " + settings + String.format(Locale.ROOT, ", %.1f MB", bytes / 1e6));
+            File[] files = new File(root.toFile(), "output").listFiles((dir, name) -> name.startsWith("StructureDefinition-"));
+            Arrays.sort(files);
+
+            //warm up, so class loading and JIT state don't land in the measurements
+            retain(type, files, false);
+            held = null;
+            long baseline = usedHeap();
+            long without = retain(type, files, false) - baseline;
+            held = null;
+            long with = retain(type, files, true) - baseline;
+            held = null;
+            System.out.println(String.format(Locale.ROOT, "Retained heap for %d profiles: %.1f MB without the pool, %.1f MB with it, %.1f MB (%.0f%%) saved",
+                    files.length, without / 1e6, with / 1e6, (without - with) / 1e6, 100.0 * (without - with) / without));
+            System.out.println(StringPool.getSummary());
+        } finally {
+            delete(root);
+        }
+    }
+
+    /**
+     * Builds the results into {@link #held}, which the caller clears again.
+     *
+     * @return heap in use while the results are held
+     */
+    private static long retain(IgType type, File[] files, boolean pooled) throws Exception {
+        StringPool.clear();
+        StringPool.setEnabled(pooled);
+        held = new ArrayList<>(files.length);
+        for (File file : files) {
+            held.add(build(type, file));
+        }
+        return usedHeap();
+    }
+
+    private static ProfileResult build(IgType type, File file) throws Exception {
+        switch (type) {
+            case QICORE:
+            case QICORE_MS:
+                return ((QICoreProcessor) type.getProcessor()).buildProfileResult(file, false);
+            default:
+                return ((DEQMProcessor) type.getProcessor()).buildProfileResult(file, false);
+        }
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            memory.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static void delete(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.icf.ecqm.structuredefinition.introgenerator;
+
+import com.icf.ecqm.structuredefinition.introgenerator.common.Log;
+import com.icf.ecqm.structuredefinition.introgenerator.common.MissingFilePolicy;
+import com.icf.ecqm.structuredefinition.introgenerator.common.ProfileTaskRunner;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunOptions;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunSummary;
+import com.icf.ecqm.structuredefinition.introgenerator.common.SyntheticIgGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * End to end throughput over generated IGs: for every profile count, generates a corpus with
+ * {@link SyntheticIgGenerator}, runs the full processor over it and reports profiles/second, MB/second (of
+ * StructureDefinition JSON) and peak heap. Each size runs --runs times, each on a fresh tree, and the fastest run is
+ * reported; processors run with quiet logging. --keep leaves the generated trees in place.
+ * <p>
+ * Usage: ThroughputHarness [--type qicore|qicore-ms|deqm] [--threads N] [--runs N] [--elements N] [--depth N]
+ * [--slices R] [--extensions R] [--key-elements R] [--must-support R] [--seed N] [--keep] [profileCount...]
+ * <br>
+ * ie from Maven: mvn -Pjmh test-compile exec:exec@throughput -Dthroughput.args="--type deqm 100 1000 10000"
+ */
+public class ThroughputHarness {
+
+    private static class Measurement {
+        private final int profiles;
+        private final long bytes;
+        private final long nanos;
+        private final long peakHeapBytes;
+        private final RunSummary summary;
+
+        private Measurement(int profiles, long bytes, long nanos, long peakHeapBytes, RunSummary summary) {
+            this.profiles = profiles;
+            this.bytes = bytes;
+            this.nanos = nanos;
+            this.peakHeapBytes = peakHeapBytes;
+            this.summary = summary;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        IgType type = IgType.QICORE;
+        int threads = ProfileTaskRunner.defaultThreads();
+        int runs = 2;
+        boolean keep = false;
+        SyntheticIgGenerator.Settings settings = new SyntheticIgGenerator.Settings();
+        List<Integer> profileCounts = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--keep")) {
+                keep = true;
+            } else if (arg.startsWith("--")) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + arg);
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "--type":
+                        type = IgType.fromString(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--runs":
+                        runs = Integer.parseInt(value);
+                        break;
+                    case "--elements":
+                        settings.setElementsPerProfile(Integer.parseInt(value));
+                        break;
+                    case "--depth":
+                        settings.setSnapshotDepth(Integer.parseInt(value));
+                        break;
+                    case "--slices":
+                        settings.setSliceDensity(Double.parseDouble(value));
+                        break;
+                    case "--extensions":
+                        settings.setExtensionDensity(Double.parseDouble(value));
+                        break;
+                    case "--key-elements":
+                        settings.setKeyElementRatio(Double.parseDouble(value));
+                        break;
+                    case "--must-support":
+                        settings.setMustSupportRatio(Double.parseDouble(value));
+                        break;
+                    case "--seed":
+                        settings.setSeed(Long.parseLong(value));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            } else {
+                profileCounts.add(Integer.parseInt(arg));
+            }
+        }
+        if (profileCounts.isEmpty()) {
+            profileCounts.add(100);
+            profileCounts.add(1000);
+            profileCounts.add(10000);
+        }
+
+        Log.setLevel(Log.Level.QUIET);
+        System.out.println("Type: " + type + ", threads: " + threads + ", runs per size: " + runs);
+        List<Measurement> measurements = new ArrayList<>();
+        for (int profileCount : profileCounts) {
+            settings.setProfileCount(profileCount);
+            Measurement best = null;
+            //every run gets a freshly generated tree, so each one injects every intro and writes the page
+            for (int run = 0; run < runs; run++) {
+                Path root = Files.createTempDirectory("synthetic-ig-" + profileCount + "-");
+                try {
+                    long bytes = new SyntheticIgGenerator(settings).generate(root.toFile());
+                    if (run == 0) {
+                        System.out.println("Generated " + root + ": " + settings + String.format(Locale.ROOT, ", %.1f MB", bytes / 1e6));
+                    }
+                    Measurement measurement = measure(type, root.toFile(), threads, profileCount, bytes);
+                    if (best == null || measurement.nanos < best.nanos) {
+                        best = measurement;
+                    }
+                } finally {
+                    if (!keep) {
+                        delete(root);
+                    }
+                }
+            }
+            measurements.add(best);
+            print(best);
+        }
+
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%10s %10s %10s %12s %10s %12s", "profiles", "MB", "seconds",
+                "profiles/s", "MB/s", "peak heap MB"));
+        for (Measurement measurement : measurements) {
+            double seconds = measurement.nanos / 1e9;
+            System.out.println(String.format(Locale.ROOT, "%10d %10.1f %10.3f %12.1f %10.2f %12.1f", measurement.profiles,
+                    measurement.bytes / 1e6, seconds, measurement.profiles / seconds, measurement.bytes / 1e6 / seconds,
+                    measurement.peakHeapBytes / 1e6));
+        }
+    }
+
+    private static Measurement measure(IgType type, File root, int threads, int profileCount, long bytes) {
+        RunOptions options = new RunOptions()
+                .setRoot(root)
+                .setThreads(threads)
+                .setMissingFilePolicy(MissingFilePolicy.SKIP);
+
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+
+        long start = System.nanoTime();
+        RunSummary summary = type.getProcessor().runMain(options);
+        long nanos = System.nanoTime() - start;
+
+        //sum of the pools' own peaks, which can overstate the heap's single peak slightly
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+        return new Measurement(profileCount, bytes, nanos, peakHeap, summary);
+    }
+
+    private static void print(Measurement measurement) {
+        double seconds = measurement.nanos / 1e9;
+        System.out.println(String.format(Locale.ROOT, "  %d profiles in %.3f s: %.1f profiles/s, %.2f MB/s, peak heap %.1f MB",
+                measurement.profiles, seconds, measurement.profiles / seconds, measurement.bytes / 1e6 / seconds,
+                measurement.peakHeapBytes / 1e6));
+        System.out.println("  " + measurement.summary);
+    }
+
+    private static void delete(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Generated StructureDefinitions for the benchmarks. The shape is fixed by the parameters alone (no randomness), so
+ * every fork and every run measures the same input.
+ */
+public class BenchmarkProfiles {
+    public static final String CODE_PATH_URL = "http://hl7.org/fhir/StructureDefinition/cqf-modelInfo-primaryCodePath";
+    public static final String KEY_ELEMENT_URL = "http://hl7.org/fhir/us/qicore/StructureDefinition/qicore-keyelement";
+
+    private static final int CHILDREN_PER_ELEMENT = 4;
+
+    private BenchmarkProfiles() {
+    }
+
+    /**
+     * @param snapshotSize number of regular snapshot elements (besides the root and the slices); every fifth one is
+     *                     top level and the others are its children
+     * @param sliceCount   number of extension slices on the root element
+     */
+    public static JsonObject structureDefinition(String id, int snapshotSize, int sliceCount) {
+        String type = "Observation";
+
+        JsonArray elements = new JsonArray();
+        elements.add(element(type, type, null, "Root element", 0, "*", false, false));
+        for (int slice = 0; slice < sliceCount; slice++) {
+            elements.add(element(type + ".extension:slice" + slice, type + ".extension", "slice" + slice,
+                    "Extension slice " + slice + " | with a pipe", slice % 2, "1", true, slice % 3 == 0));
+        }
+
+        String parent = type;
+        for (int i = 0; i < snapshotSize; i++) {
+            String path;
+            if (i % (CHILDREN_PER_ELEMENT + 1) == 0) {
+                parent = type + ".element" + i;
+                path = parent;
+            } else {
+                path = parent + ".child" + i;
+            }
+            elements.add(element(path, path, null, "Element " + i + " (QI-Core) (USCDI) short  description",
+                    i % 3 == 0 ? 1 : 0, i % 7 == 0 ? "*" : "1", i % 2 == 0, i % 4 == 1));
+        }
+
+        JsonObject snapshot = new JsonObject();
+        snapshot.add("element", elements);
+
+        JsonObject codePath = new JsonObject();
+        codePath.addProperty("url", CODE_PATH_URL);
+        codePath.addProperty("valueString", "code");
+        JsonArray extensions = new JsonArray();
+        extensions.add(codePath);
+
+        JsonObject root = new JsonObject();
+        root.addProperty("resourceType", "StructureDefinition");
+        root.addProperty("id", id);
+        root.addProperty("title", "Benchmark " + id);
+        root.addProperty("type", type);
+        root.add("extension", extensions);
+        root.add("snapshot", snapshot);
+        return root;
+    }
+
+    /**
+     * The md page map a run fills in (title:htmlFileName to page entry) for profileCount profiles.
+     */
+    public static Map<String, String> mdMap(Function<StructureDefinitionRecord, String> mdEntry, int profileCount, int snapshotSize, int sliceCount) {
+        Map<String, String> mdMap = new HashMap<>();
+        for (int i = 0; i < profileCount; i++) {
+            String id = "benchmark-" + i;
+            String entry = mdEntry.apply(StructureDefinitionRecord.fromJson(structureDefinition(id, snapshotSize, sliceCount)));
+            mdMap.put("Benchmark " + id + ":StructureDefinition-" + id + ".html", entry);
+        }
+        return mdMap;
+    }
+
+    /**
+     * An existing intro file holding a previously generated intro between the markers, the way a second run finds it.
+     */
+    public static String introFile(String previousIntro, int paragraphs) {
+        StringBuilder file = new StringBuilder();
+        file.append("{% assign id = {{include.id}} %}\n");
+        file.append(previousIntro).append('\n');
+        file.append("<div xmlns=\"http://www.w3.org/1999/xhtml\">\n");
+        for (int i = 0; i < paragraphs; i++) {
+            file.append("  <p>Hand written guidance paragraph ").append(i).append(" for this profile.</p>\n");
+        }
+        file.append("</div>\n");
+        return file.toString();
+    }
+
+    private static JsonObject element(String id, String path, String sliceName, String shortDesc, int min, String max,
+                                      boolean mustSupport, boolean keyElement) {
+        JsonObject element = new JsonObject();
+        element.addProperty("id", id);
+        element.addProperty("path", path);
+        if (sliceName != null) {
+            element.addProperty("sliceName", sliceName);
+        }
+        element.addProperty("short", shortDesc);
+        element.addProperty("min", min);
+        element.addProperty("max", max);
+        element.addProperty("mustSupport", mustSupport);
+        if (keyElement) {
+            JsonObject extension = new JsonObject();
+            extension.addProperty("url", KEY_ELEMENT_URL);
+            extension.addProperty("valueBoolean", true);
+            JsonArray extensions = new JsonArray();
+            extensions.add(extension);
+            element.add("extension", extensions);
+        }
+        return element;
+    }
+}
@@ -0,0 +1,78 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and parsing one multi-MB StructureDefinition from disk, with the old FileReader (platform charset, 8K
+ * buffers) against {@link Utf8FileReader}, into a Gson tree and with the {@link StreamingSnapshotExtractor}.
+ * The "bytes" counter is the read/parse throughput in bytes per second (snapshotSize 5000 is ~1.3 MB, 20000 ~5 MB).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonReadBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class FileState {
+        @Param({"5000", "20000"})
+        public int snapshotSize;
+
+        @Param({"fileReader", "utf8FileReader"})
+        public String reader;
+
+        File file;
+
+        @Setup
+        public void setUp() throws IOException {
+            file = File.createTempFile("benchmark-structuredefinition", ".json");
+            file.deleteOnExit();
+            String json = BenchmarkProfiles.structureDefinition("benchmark", snapshotSize, 50).toString();
+            Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @TearDown
+        public void tearDown() {
+            file.delete();
+        }
+
+        Reader open() throws IOException {
+            return reader.equals("fileReader") ? new FileReader(file) : new Utf8FileReader(file);
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public long bytes;
+    }
+
+    @Benchmark
+    public JsonElement parseTree(FileState state, Bytes bytes) throws IOException {
+        try (Reader reader = state.open()) {
+            JsonElement tree = JsonParser.parseReader(reader);
+            bytes.bytes += state.file.length();
+            return tree;
+        }
+    }
+
+    @Benchmark
+    public StructureDefinitionRecord parseStreaming(FileState state, Bytes bytes) throws IOException {
+        try (Reader reader = state.open()) {
+            StructureDefinitionRecord record = StreamingSnapshotExtractor.extract(reader);
+            bytes.bytes += state.file.length();
+            return record;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Writes a fake IG tree shaped like a real one, to run the tool end to end at any size:
+ * <ul>
+ * <li>output/StructureDefinition-*.json: profiles with a nested snapshot (plus differential and narrative, which the
+ * tool skips over but has to parse), extension and coding slices with children, key element extensions and
+ * mustSupport flags at the configured densities</li>
+ * <li>input/intro-notes/*-intro.xml (QI-Core) and input/pagecontent/*-intro.md (DEQM) for every profile, so the
+ * same tree serves every IG type, plus an empty input/pages</li>
+ * </ul>
+ * Output is fully determined by the {@link Settings} (including the seed).
+ */
+public class SyntheticIgGenerator {
+    public static final String CODE_PATH_URL = "http://hl7.org/fhir/StructureDefinition/cqf-modelInfo-primaryCodePath";
+    public static final String KEY_ELEMENT_URL = "http://hl7.org/fhir/us/qicore/StructureDefinition/qicore-keyelement";
+
+    private static final String[] RESOURCE_TYPES = {"Observation", "Condition", "Procedure", "Encounter",
+            "MedicationRequest", "ServiceRequest", "DiagnosticReport", "Immunization", "AllergyIntolerance", "Device"};
+    private static final String[] DATA_TYPES = {"string", "code", "CodeableConcept", "Reference", "dateTime",
+            "Period", "Identifier", "boolean", "Quantity", "BackboneElement"};
+    private static final String[] WORDS = {"patient", "clinical", "status", "code", "value", "period", "reference",
+            "category", "subject", "performer", "reason", "note", "identifier", "effective", "issued", "method"};
+
+    public static class Settings {
+        private int profileCount = 100;
+        private int elementsPerProfile = 80;
+        private int snapshotDepth = 4;
+        private double sliceDensity = 0.05;
+        private double extensionDensity = 0.05;
+        private double keyElementRatio = 0.15;
+        private double mustSupportRatio = 0.3;
+        private double requiredRatio = 0.1;
+        private double inheritedShortRatio = 0;
+        private long seed = 42;
+
+        public int getProfileCount() {
+            return profileCount;
+        }
+
+        public Settings setProfileCount(int profileCount) {
+            this.profileCount = profileCount;
+            return this;
+        }
+
+        /**
+         * Snapshot elements per profile before slicing, which adds its own.
+         */
+        public Settings setElementsPerProfile(int elementsPerProfile) {
+            this.elementsPerProfile = elementsPerProfile;
+            return this;
+        }
+
+        /**
+         * Deepest element path below the resource (Observation.a.b.c is 3).
+         */
+        public Settings setSnapshotDepth(int snapshotDepth) {
+            this.snapshotDepth = snapshotDepth;
+            return this;
+        }
+
+        /**
+         * Share of elements that get sliced (two coding-style slices with children each).
+         */
+        public Settings setSliceDensity(double sliceDensity) {
+            this.sliceDensity = sliceDensity;
+            return this;
+        }
+
+        /**
+         * Share of elements followed by an extension slice (with url and value[x] children).
+         */
+        public Settings setExtensionDensity(double extensionDensity) {
+            this.extensionDensity = extensionDensity;
+            return this;
+        }
+
+        public Settings setKeyElementRatio(double keyElementRatio) {
+            this.keyElementRatio = keyElementRatio;
+            return this;
+        }
+
+        public Settings setMustSupportRatio(double mustSupportRatio) {
+            this.mustSupportRatio = mustSupportRatio;
+            return this;
+        }
+
+        /**
+         * Share of elements with min 1.
+         */
+        public Settings setRequiredRatio(double requiredRatio) {
+            this.requiredRatio = requiredRatio;
+            return this;
+        }
+
+        /**
+         * Share of elements whose short description is the base resource's, ie the same for the same path in every
+         * profile of that type (as in a real IG, where most are inherited). 0 (the default) makes every one random.
+         */
+        public Settings setInheritedShortRatio(double inheritedShortRatio) {
+            this.inheritedShortRatio = inheritedShortRatio;
+            return this;
+        }
+
+        public Settings setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "profiles=%d elements=%d depth=%d slices=%.2f extensions=%.2f keyElements=%.2f mustSupport=%.2f required=%.2f inheritedShorts=%.2f seed=%d",
+                    profileCount, elementsPerProfile, snapshotDepth, sliceDensity, extensionDensity, keyElementRatio,
+                    mustSupportRatio, requiredRatio, inheritedShortRatio, seed);
+        }
+    }
+
+    private final Settings settings;
+    private final Random random;
+
+    public SyntheticIgGenerator(Settings settings) {
+        this.settings = settings;
+        this.random = new Random(settings.seed);
+    }
+
+    /**
+     * Writes the tree under root (created if needed), overwriting files from an earlier run.
+     *
+     * @return total size of the StructureDefinition files written, in bytes
+     */
+    public long generate(File root) throws IOException {
+        File output = new File(root, "output");
+        File introNotes = new File(root, "input" + File.separator + "intro-notes");
+        File pageContent = new File(root, "input" + File.separator + "pagecontent");
+        File pages = new File(root, "input" + File.separator + "pages");
+        for (File dir : new File[]{output, introNotes, pageContent, pages}) {
+            Files.createDirectories(dir.toPath());
+        }
+
+        long bytes = 0;
+        for (int i = 0; i < settings.profileCount; i++) {
+            String type = RESOURCE_TYPES[i % RESOURCE_TYPES.length];
+            String id = "synthetic-" + type.toLowerCase(Locale.ROOT) + "-" + i;
+
+            File json = new File(output, "StructureDefinition-" + id + ".json");
+            try (Writer writer = Files.newBufferedWriter(json.toPath(), StandardCharsets.UTF_8)) {
+                writer.write(structureDefinition(id, type).toString());
+            }
+            bytes += json.length();
+
+            Files.writeString(new File(introNotes, "StructureDefinition-" + id + "-intro.xml").toPath(), introXml(id));
+            Files.writeString(new File(pageContent, "StructureDefinition-" + id + "-intro.md").toPath(), introMd(id));
+        }
+        return bytes;
+    }
+
+    public JsonObject structureDefinition(String id, String type) {
+        JsonArray snapshot = new JsonArray();
+        snapshot.add(element(type, type, null, false));
+        addChildren(snapshot, type, 1, settings.elementsPerProfile);
+
+        //the differential repeats the constrained elements, as a real IG publisher output does
+        JsonArray differential = new JsonArray();
+        for (int i = 0; i < snapshot.size(); i++) {
+            JsonObject element = snapshot.get(i).getAsJsonObject();
+            if (element.get("mustSupport").getAsBoolean() || element.has("sliceName")) {
+                differential.add(element.deepCopy());
+            }
+        }
+
+        JsonObject root = new JsonObject();
+        root.addProperty("resourceType", "StructureDefinition");
+        root.addProperty("id", id);
+        JsonObject text = new JsonObject();
+        text.addProperty("status", "generated");
+        text.addProperty("div", "<div xmlns=\"http://www.w3.org/1999/xhtml\"><p>" + sentence(60) + "</p></div>");
+        root.add("text", text);
+        if (random.nextInt(3) > 0) {
+            JsonArray extensions = new JsonArray();
+            JsonObject codePath = new JsonObject();
+            codePath.addProperty("url", CODE_PATH_URL);
+            codePath.addProperty("valueString", "code");
+            extensions.add(codePath);
+            root.add("extension", extensions);
+        }
+        root.addProperty("url", "http://example.org/fhir/StructureDefinition/" + id);
+        root.addProperty("name", id.replace("-", ""));
+        root.addProperty("title", "Synthetic " + type + " " + id.substring(id.lastIndexOf('-') + 1));
+        root.addProperty("status", "active");
+        root.addProperty("description", sentence(25));
+        root.addProperty("kind", "resource");
+        root.addProperty("abstract", false);
+        root.addProperty("type", type);
+        root.addProperty("baseDefinition", "http://hl7.org/fhir/StructureDefinition/" + type);
+        root.addProperty("derivation", "constraint");
+        JsonObject snapshotObject = new JsonObject();
+        snapshotObject.add("element", snapshot);
+        root.add("snapshot", snapshotObject);
+        JsonObject differentialObject = new JsonObject();
+        differentialObject.add("element", differential);
+        root.add("differential", differentialObject);
+        return root;
+    }
+
+    /**
+     * Adds up to budget elements below parentPath in snapshot order (each parent before its children).
+     *
+     * @return the number of elements added
+     */
+    private int addChildren(JsonArray snapshot, String parentPath, int depth, int budget) {
+        int added = 0;
+        int index = 0;
+        while (added < budget) {
+            String path = parentPath + "." + WORDS[index % WORDS.length] + (index >= WORDS.length ? index : "");
+            index++;
+            snapshot.add(element(path, path, null, true));
+            added++;
+
+            if (random.nextDouble() < settings.extensionDensity) {
+                String sliceName = "ext" + WORDS[random.nextInt(WORDS.length)] + added;
+                String extensionId = path + ".extension:" + sliceName;
+                snapshot.add(element(extensionId, path + ".extension", sliceName, true));
+                snapshot.add(element(extensionId + ".url", path + ".extension.url", null, false));
+                snapshot.add(element(extensionId + ".value[x]", path + ".extension.value[x]", null, false));
+                added += 3;
+            }
+
+            if (random.nextDouble() < settings.sliceDensity) {
+                for (int slice = 0; slice < 2; slice++) {
+                    String sliceName = "slice" + slice;
+                    snapshot.add(element(path + ":" + sliceName, path, sliceName, true));
+                    snapshot.add(element(path + ":" + sliceName + ".system", path + ".system", null, false));
+                    snapshot.add(element(path + ":" + sliceName + ".code", path + ".code", null, false));
+                    added += 3;
+                }
+            }
+
+            //roughly a third of the elements are backbone elements with children of their own
+            if (depth < settings.snapshotDepth && random.nextInt(3) == 0) {
+                added += addChildren(snapshot, path, depth + 1, Math.min(budget - added, 2 + random.nextInt(6)));
+            }
+            if (depth > 1 && random.nextInt(4) == 0) {
+                break;
+            }
+        }
+        return added;
+    }
+
+    private JsonObject element(String id, String path, String sliceName, boolean constrained) {
+        JsonObject element = new JsonObject();
+        element.addProperty("id", id);
+        if (constrained && random.nextDouble() < settings.keyElementRatio) {
+            JsonArray extensions = new JsonArray();
+            JsonObject keyElement = new JsonObject();
+            keyElement.addProperty("url", KEY_ELEMENT_URL);
+            keyElement.addProperty("valueBoolean", true);
+            extensions.add(keyElement);
+            element.add("extension", extensions);
+        }
+        element.addProperty("path", path);
+        if (sliceName != null) {
+            element.addProperty("sliceName", sliceName);
+        }
+        element.addProperty("short", shortDescription(path));
+        element.addProperty("definition", sentence(20 + random.nextInt(30)));
+        boolean required = constrained && random.nextDouble() < settings.requiredRatio;
+        element.addProperty("min", required ? 1 : 0);
+        element.addProperty("max", random.nextInt(4) == 0 ? "*" : "1");
+        JsonObject base = new JsonObject();
+        base.addProperty("path", path);
+        base.addProperty("min", 0);
+        base.addProperty("max", "*");
+        element.add("base", base);
+        JsonArray types = new JsonArray();
+        JsonObject elementType = new JsonObject();
+        elementType.addProperty("code", DATA_TYPES[random.nextInt(DATA_TYPES.length)]);
+        types.add(elementType);
+        element.add("type", types);
+        element.addProperty("mustSupport", constrained && random.nextDouble() < settings.mustSupportRatio);
+        element.addProperty("isModifier", false);
+        element.addProperty("isSummary", random.nextBoolean());
+        return element;
+    }
+
+    private String shortDescription(String path) {
+        //no draw at 0, so trees generated before the setting existed stay the same
+        if (settings.inheritedShortRatio > 0 && random.nextDouble() < settings.inheritedShortRatio) {
+            Random base = new Random(path.hashCode());
+            return sentence(base, 2 + base.nextInt(6));
+        }
+        String description = sentence(2 + random.nextInt(6));
+        switch (random.nextInt(6)) {
+            case 0:
+                return description + " (QI-Core)";
+            case 1:
+                return description + " (USCDI)";
+            case 2:
+                return description + " | other";
+            default:
+                return description;
+        }
+    }
+
+    private String sentence(int words) {
+        return sentence(random, words);
+    }
+
+    private static String sentence(Random random, int words) {
+        List<String> sentence = new ArrayList<>(words);
+        for (int i = 0; i < words; i++) {
+            sentence.add(WORDS[random.nextInt(WORDS.length)]);
+        }
+        String text = String.join(" ", sentence);
+        return Character.toUpperCase(text.charAt(0)) + text.substring(1);
+    }
+
+    private static String introXml(String id) {
+        return "<div xmlns=\"http://www.w3.org/1999/xhtml\" xmlns:f=\"http://hl7.org/fhir\">\n"
+                + "  <p>Usage notes for " + id + ", written by hand.</p>\n"
+                + "</div>\n";
+    }
+
+    private static String introMd(String id) {
+        return "### Usage notes\n"
+                + "Notes for " + id + ", written by hand.\n";
+    }
+}
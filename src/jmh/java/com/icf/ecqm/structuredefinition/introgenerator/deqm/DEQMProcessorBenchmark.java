@@ -0,0 +1,77 @@
+package com.icf.ecqm.structuredefinition.introgenerator.deqm;
+
+import com.icf.ecqm.structuredefinition.introgenerator.common.BenchmarkProfiles;
+import com.icf.ecqm.structuredefinition.introgenerator.common.StructureDefinitionRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of a DEQM run, without disk I/O: classifying and rendering one profile, splicing the intro into an
+ * existing pagecontent file, and rendering the aggregate musthave-qi-list page.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DEQMProcessorBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ProfileState {
+        @Param({"50", "500", "5000"})
+        public int snapshotSize;
+
+        @Param({"0", "50"})
+        public int sliceCount;
+
+        DEQMProcessor processor;
+        StructureDefinitionRecord structureDefinition;
+        String intro;
+        String introFile;
+
+        @Setup
+        public void setUp() {
+            processor = new DEQMProcessor();
+            structureDefinition = StructureDefinitionRecord.fromJson(
+                    BenchmarkProfiles.structureDefinition("benchmark", snapshotSize, sliceCount));
+            intro = processor.buildStructureDefinitionIntro(structureDefinition);
+            introFile = BenchmarkProfiles.introFile(intro, 20);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class PageState {
+        @Param({"10", "100", "1000"})
+        public int profileCount;
+
+        @Param({"50", "500"})
+        public int snapshotSize;
+
+        Map<String, String> mdMap;
+
+        @Setup
+        public void setUp() {
+            mdMap = BenchmarkProfiles.mdMap(new DEQMProcessor()::buildMDEntry, profileCount, snapshotSize, 10);
+        }
+    }
+
+    @Benchmark
+    public String buildIntro(ProfileState state) {
+        return state.processor.buildStructureDefinitionIntro(state.structureDefinition);
+    }
+
+    @Benchmark
+    public StringBuilder buildContent(ProfileState state) throws IOException {
+        return DEQMProcessor.buildContent(new BufferedReader(new StringReader(state.introFile)), state.intro);
+    }
+
+    @Benchmark
+    public StringBuilder buildMDPage(PageState state) {
+        return DEQMProcessor.buildMDPage(state.mdMap);
+    }
+}
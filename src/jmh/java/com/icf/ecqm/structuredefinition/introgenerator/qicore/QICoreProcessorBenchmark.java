@@ -0,0 +1,80 @@
+package com.icf.ecqm.structuredefinition.introgenerator.qicore;
+
+import com.icf.ecqm.structuredefinition.introgenerator.common.BenchmarkProfiles;
+import com.icf.ecqm.structuredefinition.introgenerator.common.StructureDefinitionRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of a QI-Core run, without disk I/O: classifying and rendering one profile (key element and -ms rules),
+ * splicing the intro into an existing intro file, and rendering the aggregate qi-elements page.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QICoreProcessorBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ProfileState {
+        @Param({"false", "true"})
+        public boolean ms;
+
+        @Param({"50", "500", "5000"})
+        public int snapshotSize;
+
+        @Param({"0", "50"})
+        public int sliceCount;
+
+        QICoreProcessor processor;
+        StructureDefinitionRecord structureDefinition;
+        String intro;
+        String introFile;
+
+        @Setup
+        public void setUp() {
+            processor = new QICoreProcessor(ms);
+            structureDefinition = StructureDefinitionRecord.fromJson(
+                    BenchmarkProfiles.structureDefinition("benchmark", snapshotSize, sliceCount));
+            intro = processor.buildStructureDefinitionIntro(structureDefinition);
+            introFile = BenchmarkProfiles.introFile(intro, 20);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class PageState {
+        @Param({"10", "100", "1000"})
+        public int profileCount;
+
+        @Param({"50", "500"})
+        public int snapshotSize;
+
+        Map<String, String> mdMap;
+
+        @Setup
+        public void setUp() {
+            mdMap = BenchmarkProfiles.mdMap(new QICoreProcessor()::buildMDEntry, profileCount, snapshotSize, 10);
+        }
+    }
+
+    @Benchmark
+    public String buildIntro(ProfileState state) {
+        return state.processor.buildStructureDefinitionIntro(state.structureDefinition);
+    }
+
+    @Benchmark
+    public StringBuilder buildContent(ProfileState state) throws IOException {
+        return QICoreProcessor.buildContent(new BufferedReader(new StringReader(state.introFile)), state.intro);
+    }
+
+    @Benchmark
+    public StringBuilder buildMDPage(PageState state) {
+        return QICoreProcessor.buildMDPage(state.mdMap);
+    }
+}
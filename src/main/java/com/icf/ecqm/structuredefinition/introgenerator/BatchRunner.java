@@ -0,0 +1,178 @@
+package com.icf.ecqm.structuredefinition.introgenerator;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.icf.ecqm.structuredefinition.introgenerator.common.Log;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunMetrics;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunOptions;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunSummary;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs several IG roots (ie QI-Core, DEQM and IGs derived from them) one after another in a single JVM, sharing one
+ * worker pool and the warmed up engines, and reports per-root counts and timing.
+ */
+public class BatchRunner {
+
+    /**
+     * One IG directory and the processor that handles it: qicore, qicore-ms or deqm.
+     */
+    public static class IgRoot {
+        private final IgType type;
+        private final File directory;
+
+        public IgRoot(IgType type, File directory) {
+            this.type = type;
+            this.directory = directory;
+        }
+
+        /**
+         * Parses "type=path", ie "deqm=../davinci-deqm".
+         */
+        public static IgRoot parse(String spec) {
+            int separator = spec.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected type=path for an IG root, was '" + spec + "'");
+            }
+            return new IgRoot(IgType.fromString(spec.substring(0, separator).trim()), new File(spec.substring(separator + 1).trim()));
+        }
+
+        public IgType getType() {
+            return type;
+        }
+
+        public File getDirectory() {
+            return directory;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + directory.getPath();
+        }
+    }
+
+    private final List<IgRoot> roots;
+    private final Map<IgRoot, RunSummary> summaries = new LinkedHashMap<>();
+    private final RunSummary total = new RunSummary();
+
+    public BatchRunner(List<IgRoot> roots) {
+        this.roots = roots;
+    }
+
+    /**
+     * Reads a roots file: one "type path" per line (ie "qicore ../fhir-qi-core"); blank lines and lines starting with #
+     * are ignored. Relative paths are resolved against the file's directory.
+     */
+    public static List<IgRoot> readRootsFile(File rootsFile) throws IOException {
+        List<IgRoot> roots = new ArrayList<>();
+        for (String line : Files.readAllLines(rootsFile.toPath(), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+", 2);
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("Expected 'type path' in " + rootsFile.getPath() + ", was '" + line + "'");
+            }
+            File directory = new File(parts[1]);
+            if (!directory.isAbsolute() && rootsFile.getAbsoluteFile().getParentFile() != null) {
+                directory = new File(rootsFile.getAbsoluteFile().getParentFile(), parts[1]);
+            }
+            roots.add(new IgRoot(IgType.fromString(parts[0]), directory));
+        }
+        return roots;
+    }
+
+    /**
+     * Runs every root with a copy of the given options. A root that fails outright is recorded as an error and the
+     * batch moves on to the next one.
+     *
+     * @return the combined counts of all roots
+     */
+    public RunSummary run(RunOptions options) {
+        ExecutorService executor = options.getThreads() > 1 ? Executors.newFixedThreadPool(options.getThreads()) : null;
+        try {
+            for (IgRoot root : roots) {
+                Log.info("\n=== " + root + " ===");
+                RunOptions rootOptions = options.copy().setRoot(root.getDirectory()).setExecutor(executor);
+
+                RunSummary summary;
+                try {
+                    summary = root.getType().getProcessor().runMain(rootOptions);
+                } catch (Exception e) {
+                    Log.error("Error processing IG root: " + root, e);
+                    summary = new RunSummary();
+                    summary.recordError();
+                    summary.finish();
+                }
+                summaries.put(root, summary);
+                total.add(summary);
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+        total.finish();
+
+        Log.info("\nBatch summary:");
+        for (Map.Entry<IgRoot, RunSummary> entry : summaries.entrySet()) {
+            Log.info("  " + entry.getKey() + ": " + entry.getValue());
+        }
+        Log.info("  total: " + total);
+        return total;
+    }
+
+    public Map<IgRoot, RunSummary> getSummaries() {
+        return summaries;
+    }
+
+    /**
+     * Totals plus a "roots" array with each root's type, directory and own counts/timing.
+     */
+    public String toJson() {
+        JsonObject json = total.toJsonObject();
+        JsonArray rootsJson = new JsonArray();
+        for (Map.Entry<IgRoot, RunSummary> entry : summaries.entrySet()) {
+            JsonObject rootJson = new JsonObject();
+            rootJson.addProperty("type", entry.getKey().getType().toString());
+            rootJson.addProperty("root", entry.getKey().getDirectory().getPath());
+            for (Map.Entry<String, JsonElement> field : entry.getValue().toJsonObject().entrySet()) {
+                rootJson.add(field.getKey(), field.getValue());
+            }
+            rootsJson.add(rootJson);
+        }
+        json.add("roots", rootsJson);
+        return json.toString();
+    }
+
+    /**
+     * Each root's type, directory and {@link RunMetrics} report, for runs with {@link RunOptions#getMetricsFile()}.
+     */
+    public String metricsToJson() {
+        JsonArray rootsJson = new JsonArray();
+        for (Map.Entry<IgRoot, RunSummary> entry : summaries.entrySet()) {
+            JsonObject rootJson = new JsonObject();
+            rootJson.addProperty("type", entry.getKey().getType().toString());
+            rootJson.addProperty("root", entry.getKey().getDirectory().getPath());
+            RunMetrics metrics = entry.getValue().getMetrics();
+            rootJson.add("metrics", metrics != null ? metrics.toJsonObject() : new JsonObject());
+            rootsJson.add(rootJson);
+        }
+        JsonObject json = new JsonObject();
+        json.add("roots", rootsJson);
+        return new GsonBuilder().setPrettyPrinting().create().toJson(json);
+    }
+}
@@ -0,0 +1,69 @@
+package com.icf.ecqm.structuredefinition.introgenerator;
+
+import com.icf.ecqm.structuredefinition.introgenerator.common.IntroProcessor;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RuleSet;
+import com.icf.ecqm.structuredefinition.introgenerator.deqm.DEQMProcessor;
+import com.icf.ecqm.structuredefinition.introgenerator.qicore.QICoreProcessor;
+
+/**
+ * The kinds of IG the tool handles, each with its (immutable, shareable) processor. Processors are created on first
+ * use, so a run only loads the classes of the IG type it actually handles.
+ */
+public enum IgType {
+    QICORE("qicore"),
+    QICORE_MS("qicore-ms"),
+    DEQM("deqm");
+
+    private final String name;
+    private volatile IntroProcessor processor;
+
+    IgType(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param name qicore, qicore-ms or deqm
+     */
+    public static IgType fromString(String name) {
+        for (IgType type : values()) {
+            if (type.name.equals(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown IG type '" + name + "', expected qicore, qicore-ms or deqm");
+    }
+
+    public IntroProcessor getProcessor() {
+        //racing threads may each create one, that's harmless since processors are stateless
+        IntroProcessor current = processor;
+        if (current == null) {
+            current = createProcessor();
+            processor = current;
+        }
+        return current;
+    }
+
+    /**
+     * A processor for this type of IG that classifies with the given rules instead of its built in ones (qicore and
+     * qicore-ms differ only in those).
+     */
+    public IntroProcessor createProcessor(RuleSet rules) {
+        return this == DEQM ? new DEQMProcessor(rules) : new QICoreProcessor(rules);
+    }
+
+    private IntroProcessor createProcessor() {
+        switch (this) {
+            case QICORE:
+                return new QICoreProcessor();
+            case QICORE_MS:
+                return new QICoreProcessor(true);
+            default:
+                return new DEQMProcessor();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,367 @@
+package com.icf.ecqm.structuredefinition.introgenerator;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.icf.ecqm.structuredefinition.introgenerator.common.Log;
+import com.icf.ecqm.structuredefinition.introgenerator.common.MissingFilePolicy;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunOptions;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunSummary;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long running server that keeps the engines warm for editor and pre-commit integration. Listens on loopback only.
+ * <p>
+ * Endpoints (type is qicore, qicore-ms or deqm):
+ * <ul>
+ * <li>POST /intro?type=... with StructureDefinition JSON as the body: returns the generated intro</li>
+ * <li>POST /regenerate?type=...&amp;root=... : full run over the IG at root, returns the run summary JSON</li>
+ * <li>POST /regenerate-files?type=...&amp;root=... with one StructureDefinition path per line (relative to root) as
+ * the body: regenerates just those intros, returns the run summary JSON</li>
+ * <li>GET /status : request counts and latencies per endpoint</li>
+ * <li>POST /shutdown : stops the server</li>
+ * </ul>
+ * Every response carries its handling time in an X-Elapsed-Millis header, and each request is logged with it.
+ * <p>
+ * Listening on loopback alone doesn't keep other local processes or web pages (through DNS rebinding) out, so requests
+ * must name a loopback Host (and Origin, if they send one), runs may only target the roots allowed at startup or
+ * folders inside them, and request bodies are limited to {@link #MAX_BODY_BYTES}.
+ */
+public class IntroServer {
+    public static final int DEFAULT_PORT = 8085;
+    static final int MAX_BODY_BYTES = 64 * 1024 * 1024;
+    private static final Set<String> LOOPBACK_HOSTS = Set.of("127.0.0.1", "localhost", "[::1]");
+
+    private final HttpServer server;
+    private final RunOptions options;
+    private final List<File> allowedRoots;
+    private final ExecutorService requestPool;
+    private final ExecutorService profilePool;
+    //runs over an IG write into it, so they go one at a time; intro requests don't touch disk and run concurrently
+    private final Object regenerateLock = new Object();
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final long startNanos = System.nanoTime();
+
+    private interface Handler {
+        Response handle(HttpExchange exchange) throws Exception;
+    }
+
+    private static class Response {
+        private final int status;
+        private final String contentType;
+        private final String body;
+
+        private Response(int status, String contentType, String body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        private static Response text(int status, String body) {
+            return new Response(status, "text/plain; charset=utf-8", body);
+        }
+
+        private static Response json(String body) {
+            return new Response(200, "application/json; charset=utf-8", body);
+        }
+    }
+
+    private static class EndpointStats {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    /**
+     * Ends a request with the given status and the message as the body.
+     */
+    private static class RequestException extends Exception {
+        private final int status;
+
+        private RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static class BadRequestException extends RequestException {
+        private BadRequestException(String message) {
+            super(400, message);
+        }
+    }
+
+    private IntroServer(int port, RunOptions options, Collection<File> allowedRoots) throws IOException {
+        //the server never reads stdin, so asking about missing files becomes skipping them
+        this.options = options.copy();
+        if (this.options.getMissingFilePolicy() == MissingFilePolicy.ASK) {
+            this.options.setMissingFilePolicy(MissingFilePolicy.SKIP);
+        }
+        this.profilePool = options.getThreads() > 1 ? Executors.newFixedThreadPool(options.getThreads()) : null;
+        this.options.setExecutor(profilePool);
+        this.requestPool = Executors.newFixedThreadPool(Math.max(2, options.getThreads()));
+        this.allowedRoots = new ArrayList<>();
+        for (File allowedRoot : allowedRoots) {
+            this.allowedRoots.add(allowedRoot.getCanonicalFile());
+        }
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(requestPool);
+        addEndpoint("/intro", "POST", this::intro);
+        addEndpoint("/regenerate", "POST", this::regenerate);
+        addEndpoint("/regenerate-files", "POST", this::regenerateFiles);
+        addEndpoint("/status", "GET", exchange -> Response.json(status()));
+        addEndpoint("/shutdown", "POST", exchange -> {
+            new Thread(this::stop, "intro-server-shutdown").start();
+            return Response.text(200, "Shutting down\n");
+        });
+    }
+
+    /**
+     * @param port         port on the loopback interface, 0 for any free port (see {@link #getPort()})
+     * @param allowedRoots the IG roots (and the folders inside them) /regenerate and /regenerate-files may run over
+     */
+    public static IntroServer start(int port, RunOptions options, Collection<File> allowedRoots) throws IOException {
+        IntroServer introServer = new IntroServer(port, options, allowedRoots);
+        introServer.server.start();
+        return introServer;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void awaitShutdown() throws InterruptedException {
+        stopped.await();
+    }
+
+    public void stop() {
+        server.stop(1);
+        requestPool.shutdown();
+        if (profilePool != null) {
+            profilePool.shutdown();
+        }
+        stopped.countDown();
+    }
+
+    private void addEndpoint(String path, String method, Handler handler) {
+        server.createContext(path, exchange -> {
+            long start = System.nanoTime();
+            Response response;
+            try {
+                checkLocalRequest(exchange);
+                if (!exchange.getRequestURI().getPath().equals(path)) {
+                    response = Response.text(404, "Not found\n");
+                } else if (!exchange.getRequestMethod().equals(method)) {
+                    response = Response.text(405, "Use " + method + " for " + path + "\n");
+                } else {
+                    response = handler.handle(exchange);
+                }
+            } catch (RequestException e) {
+                response = Response.text(e.status, e.getMessage() + "\n");
+            } catch (IllegalArgumentException | JsonParseException | IllegalStateException e) {
+                response = Response.text(400, e.getMessage() + "\n");
+            } catch (Exception e) {
+                Log.error("Error handling " + exchange.getRequestMethod() + " " + path, e);
+                response = Response.text(500, e + "\n");
+            }
+            if (response.status == 413) {
+                //not worth reading the rest of an oversized body, the connection is dropped instead
+                exchange.getResponseHeaders().set("Connection", "close");
+            } else {
+                //a request rejected before its body was read would otherwise have the connection reset under the response
+                drain(exchange);
+            }
+            long elapsed = System.nanoTime() - start;
+            stats.computeIfAbsent(path, key -> new EndpointStats()).record(elapsed);
+
+            byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", response.contentType);
+            exchange.getResponseHeaders().set("X-Elapsed-Millis", String.format(Locale.ROOT, "%.3f", elapsed / 1_000_000.0));
+            exchange.sendResponseHeaders(response.status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+            Log.info(String.format(Locale.ROOT, "%s %s %d %.3f ms", exchange.getRequestMethod(),
+                    exchange.getRequestURI(), response.status, elapsed / 1_000_000.0));
+        });
+    }
+
+    private Response intro(HttpExchange exchange) throws Exception {
+        IgType type = IgType.fromString(requireParameter(exchange, "type"));
+        String json = readBody(exchange);
+        return Response.text(200, type.getProcessor().buildStructureDefinitionIntro(json));
+    }
+
+    private Response regenerate(HttpExchange exchange) throws Exception {
+        IgType type = IgType.fromString(requireParameter(exchange, "type"));
+        RunOptions runOptions = rootOptions(exchange);
+        synchronized (regenerateLock) {
+            return Response.json(type.getProcessor().runMain(runOptions).toJson());
+        }
+    }
+
+    private Response regenerateFiles(HttpExchange exchange) throws Exception {
+        IgType type = IgType.fromString(requireParameter(exchange, "type"));
+        RunOptions runOptions = rootOptions(exchange);
+
+        List<File> files = new ArrayList<>();
+        for (String line : readBody(exchange).split("\\r?\\n")) {
+            if (!line.trim().isEmpty()) {
+                File file = runOptions.resolve(line.trim());
+                if (!isInside(file.getCanonicalFile(), runOptions.getRoot().getCanonicalFile())) {
+                    throw new RequestException(403, "Not inside the root: " + line.trim());
+                }
+                if (!file.isFile()) {
+                    throw new BadRequestException("No such file: " + file.getPath());
+                }
+                files.add(file);
+            }
+        }
+        if (files.isEmpty()) {
+            throw new BadRequestException("Expected one StructureDefinition path per line in the request body");
+        }
+
+        synchronized (regenerateLock) {
+            RunSummary summary = type.getProcessor().runFiles(runOptions, files.toArray(new File[0]));
+            return Response.json(summary.toJson());
+        }
+    }
+
+    private RunOptions rootOptions(HttpExchange exchange) throws RequestException, IOException {
+        File root = new File(requireParameter(exchange, "root"));
+        if (!root.isDirectory()) {
+            throw new BadRequestException("Not a directory: " + root.getPath());
+        }
+        File canonicalRoot = root.getCanonicalFile();
+        if (allowedRoots.stream().noneMatch(allowedRoot -> isInside(canonicalRoot, allowedRoot))) {
+            throw new RequestException(403, "Root not allowed: " + root.getPath() + " (start the server with --allow-root for it)");
+        }
+        return options.copy().setRoot(root).setWatch(false).setSummaryFile(null).setMetricsFile(null);
+    }
+
+    private String status() {
+        JsonObject json = new JsonObject();
+        json.addProperty("uptimeMillis", (System.nanoTime() - startNanos) / 1_000_000);
+        JsonObject endpoints = new JsonObject();
+        for (Map.Entry<String, EndpointStats> entry : new TreeMap<>(stats).entrySet()) {
+            EndpointStats endpointStats = entry.getValue();
+            long count = endpointStats.count.get();
+            JsonObject endpoint = new JsonObject();
+            endpoint.addProperty("requests", count);
+            endpoint.addProperty("meanMillis", count == 0 ? 0 : endpointStats.totalNanos.get() / count / 1_000_000.0);
+            endpoint.addProperty("maxMillis", endpointStats.maxNanos.get() / 1_000_000.0);
+            endpoints.add(entry.getKey(), endpoint);
+        }
+        json.add("endpoints", endpoints);
+        return json.toString();
+    }
+
+    /**
+     * Rejects requests whose Host (or Origin) isn't loopback, ie a web page that had its own host name resolve to
+     * 127.0.0.1.
+     */
+    private static void checkLocalRequest(HttpExchange exchange) throws RequestException {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        if (host == null || !isLoopback(host)) {
+            throw new RequestException(403, "Host not allowed: " + host);
+        }
+        String origin = exchange.getRequestHeaders().getFirst("Origin");
+        if (origin != null) {
+            int scheme = origin.indexOf("://");
+            if (scheme < 0 || !isLoopback(origin.substring(scheme + 3))) {
+                throw new RequestException(403, "Origin not allowed: " + origin);
+            }
+        }
+    }
+
+    /**
+     * @param host host with an optional port, as in a Host header
+     */
+    private static boolean isLoopback(String host) {
+        int port = host.lastIndexOf(':');
+        String name = port > host.lastIndexOf(']') ? host.substring(0, port) : host;
+        return LOOPBACK_HOSTS.contains(name.toLowerCase(Locale.ROOT));
+    }
+
+    private static boolean isInside(File file, File folder) {
+        for (File parent = file; parent != null; parent = parent.getParentFile()) {
+            if (parent.equals(folder)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String requireParameter(HttpExchange exchange, String name) throws BadRequestException {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int separator = parameter.indexOf('=');
+                if (separator > 0 && URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8).equals(name)) {
+                    return URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8);
+                }
+            }
+        }
+        throw new BadRequestException("Missing query parameter: " + name);
+    }
+
+    private static void drain(HttpExchange exchange) {
+        try {
+            InputStream in = exchange.getRequestBody();
+            byte[] buffer = new byte[8192];
+            long drained = 0;
+            int read;
+            while (drained <= MAX_BODY_BYTES && (read = in.read(buffer)) != -1) {
+                drained += read;
+            }
+        } catch (IOException e) {
+            //already read and closed by the handler
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException, RequestException {
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength != null && contentLength.matches("\\d+") && Long.parseLong(contentLength) > MAX_BODY_BYTES) {
+            throw tooLarge();
+        }
+        InputStream in = exchange.getRequestBody();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (body.size() + read > MAX_BODY_BYTES) {
+                throw tooLarge();
+            }
+            body.write(buffer, 0, read);
+        }
+        in.close();
+        return body.toString(StandardCharsets.UTF_8);
+    }
+
+    private static RequestException tooLarge() {
+        return new RequestException(413, "Request body is larger than " + MAX_BODY_BYTES + " bytes");
+    }
+}
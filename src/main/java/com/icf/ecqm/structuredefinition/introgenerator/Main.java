@@ -1,15 +1,108 @@
 package com.icf.ecqm.structuredefinition.introgenerator;
 
-import com.icf.ecqm.structuredefinition.introgenerator.deqm.DEQMProcessor;
-import com.icf.ecqm.structuredefinition.introgenerator.qicore.QICoreProcessor;
+import com.icf.ecqm.structuredefinition.introgenerator.common.DiscoveryMode;
+import com.icf.ecqm.structuredefinition.introgenerator.common.InputMode;
+import com.icf.ecqm.structuredefinition.introgenerator.common.IntroProcessor;
+import com.icf.ecqm.structuredefinition.introgenerator.common.Log;
+import com.icf.ecqm.structuredefinition.introgenerator.common.MissingFilePolicy;
+import com.icf.ecqm.structuredefinition.introgenerator.common.OutputMode;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RuleSet;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunOptions;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunSummary;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Main {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
         boolean MS_ARG = false;
         boolean deqm = false;
         boolean qicore = false;
-        for (String arg : args) {
+        RunOptions options = new RunOptions();
+        List<BatchRunner.IgRoot> roots = new ArrayList<>();
+        List<File> allowedRoots = new ArrayList<>();
+        boolean serve = false;
+        int port = IntroServer.DEFAULT_PORT;
+        File rulesFile = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            //named options are matched exactly so they can't trip the loose matching below (ie "--stream" vs "ms"):
+            if (arg.startsWith("--")) {
+                if (arg.equals("--stream")) {
+                    options.setStreaming(true);
+                } else if (arg.equals("--incremental")) {
+                    options.setIncremental(true);
+                } else if (arg.equals("--watch")) {
+                    options.setWatch(true);
+                } else if (arg.equals("--missing") && i + 1 < args.length) {
+                    options.setMissingFilePolicy(MissingFilePolicy.fromString(args[++i]));
+                } else if (arg.startsWith("--missing=")) {
+                    options.setMissingFilePolicy(MissingFilePolicy.fromString(arg.substring("--missing=".length())));
+                } else if (arg.equals("--input") && i + 1 < args.length) {
+                    options.setInputMode(InputMode.fromString(args[++i]));
+                } else if (arg.startsWith("--input=")) {
+                    options.setInputMode(InputMode.fromString(arg.substring("--input=".length())));
+                } else if (arg.equals("--discovery") && i + 1 < args.length) {
+                    options.setDiscoveryMode(DiscoveryMode.fromString(args[++i]));
+                } else if (arg.startsWith("--discovery=")) {
+                    options.setDiscoveryMode(DiscoveryMode.fromString(arg.substring("--discovery=".length())));
+                } else if (arg.equals("--output-mode") && i + 1 < args.length) {
+                    options.setOutputMode(OutputMode.fromString(args[++i]));
+                } else if (arg.startsWith("--output-mode=")) {
+                    options.setOutputMode(OutputMode.fromString(arg.substring("--output-mode=".length())));
+                } else if (arg.equals("--rules") && i + 1 < args.length) {
+                    rulesFile = new File(args[++i]);
+                } else if (arg.startsWith("--rules=")) {
+                    rulesFile = new File(arg.substring("--rules=".length()));
+                } else if (arg.equals("--summary") && i + 1 < args.length) {
+                    options.setSummaryFile(new File(args[++i]));
+                } else if (arg.startsWith("--summary=")) {
+                    options.setSummaryFile(new File(arg.substring("--summary=".length())));
+                } else if (arg.equals("--metrics") && i + 1 < args.length) {
+                    options.setMetricsFile(new File(args[++i]));
+                } else if (arg.startsWith("--metrics=")) {
+                    options.setMetricsFile(new File(arg.substring("--metrics=".length())));
+                } else if (arg.equals("--root") && i + 1 < args.length) {
+                    roots.add(BatchRunner.IgRoot.parse(args[++i]));
+                } else if (arg.startsWith("--root=")) {
+                    roots.add(BatchRunner.IgRoot.parse(arg.substring("--root=".length())));
+                } else if (arg.equals("--roots") && i + 1 < args.length) {
+                    roots.addAll(BatchRunner.readRootsFile(new File(args[++i])));
+                } else if (arg.startsWith("--roots=")) {
+                    roots.addAll(BatchRunner.readRootsFile(new File(arg.substring("--roots=".length()))));
+                } else if (arg.equals("--serve")) {
+                    serve = true;
+                } else if (arg.equals("--allow-root") && i + 1 < args.length) {
+                    allowedRoots.add(new File(args[++i]));
+                } else if (arg.startsWith("--allow-root=")) {
+                    allowedRoots.add(new File(arg.substring("--allow-root=".length())));
+                } else if (arg.equals("--port") && i + 1 < args.length) {
+                    port = Integer.parseInt(args[++i]);
+                } else if (arg.startsWith("--port=")) {
+                    port = Integer.parseInt(arg.substring("--port=".length()));
+                } else if (arg.equals("--threads") && i + 1 < args.length) {
+                    options.setThreads(Integer.parseInt(args[++i]));
+                } else if (arg.startsWith("--threads=")) {
+                    options.setThreads(Integer.parseInt(arg.substring("--threads=".length())));
+                } else if (arg.equals("--log") && i + 1 < args.length) {
+                    Log.setLevel(Log.Level.fromString(args[++i]));
+                } else if (arg.startsWith("--log=")) {
+                    Log.setLevel(Log.Level.fromString(arg.substring("--log=".length())));
+                } else if (arg.equals("--quiet")) {
+                    Log.setLevel(Log.Level.QUIET);
+                } else if (arg.equals("--debug")) {
+                    Log.setLevel(Log.Level.DEBUG);
+                } else {
+                    Log.warn("Unknown option: " + arg);
+                }
+                continue;
+            }
+
             if (arg.contains("ms")) {
                 MS_ARG = true;
                 continue;
@@ -24,13 +117,99 @@ public class Main {
             }
         }
 
-        if (qicore) {
-            QICoreProcessor.runMain(MS_ARG);
+        if (options.isWatch() && options.getInputMode() != InputMode.FILES) {
+            Log.error("--watch only works with --input files (it watches the StructureDefinition files in the output folder)");
+            System.exit(2);
+        }
+
+        RuleSet rules = null;
+        if (rulesFile != null) {
+            if (serve || !roots.isEmpty()) {
+                Log.error("--rules can only be used with a single IG (run from its directory, without --serve/--root/--roots)");
+                System.exit(2);
+            }
+            try {
+                rules = RuleSet.load(rulesFile);
+            } catch (IOException | IllegalArgumentException e) {
+                Log.error("Could not read rules from " + rulesFile.getPath() + ": " + e.getMessage());
+                System.exit(2);
+            }
+        }
+
+        if (serve) {
+            if (allowedRoots.isEmpty()) {
+                //the IG the server was started from
+                allowedRoots.add(new File("."));
+            }
+            IntroServer server = IntroServer.start(port, options, allowedRoots);
+            Log.info("Intro server listening on http://127.0.0.1:" + server.getPort() + " (POST /shutdown to stop)");
+            server.awaitShutdown();
+            return;
+        }
+
+        RunSummary summary;
+        String summaryJson;
+        String metricsJson;
+        if (!roots.isEmpty()) {
+            if (options.isWatch()) {
+                Log.error("--watch can only be used with a single IG (run from its directory, without --root/--roots)");
+                System.exit(2);
+            }
+            BatchRunner batch = new BatchRunner(roots);
+            summary = batch.run(options);
+            summaryJson = batch.toJson();
+            metricsJson = batch.metricsToJson();
+        }else if (qicore) {
+            summary = processor(MS_ARG ? IgType.QICORE_MS : IgType.QICORE, rules).runMain(options);
+            summaryJson = summary.toJson();
+            metricsJson = summary.getMetrics() != null ? summary.getMetrics().toJson() : "{}";
         }else if (deqm){
-            DEQMProcessor.runMain();
+            summary = processor(IgType.DEQM, rules).runMain(options);
+            summaryJson = summary.toJson();
+            metricsJson = summary.getMetrics() != null ? summary.getMetrics().toJson() : "{}";
         }else{
-            System.out.println ("Please specify 'deqm' or 'qi-core' as an argument when calling this jar");
+            Log.warn("Please specify 'deqm' or 'qi-core' as an argument when calling this jar");
+            return;
+        }
+
+        writeReport(summary, "run summary", summaryJson, options.getSummaryFile());
+        writeReport(summary, "metrics", metricsJson, options.getMetricsFile());
+
+        //non-zero exit code so batch pipelines notice failures:
+        if (summary.getErrors() > 0 || (options.getMissingFilePolicy() == MissingFilePolicy.FAIL && summary.getMissing() > 0)) {
+            System.exit(1);
+        }
+    }
+
+    private static IntroProcessor processor(IgType type, RuleSet rules) {
+        if (rules == null) {
+            return type.getProcessor();
+        }
+        try {
+            return type.createProcessor(rules);
+        } catch (IllegalArgumentException e) {
+            Log.error(e.getMessage());
+            System.exit(2);
+            return null;
+        }
+    }
+
+    private static void writeReport(RunSummary summary, String name, String json, File file) {
+        if (file == null) {
+            return;
+        }
+        if (file.getPath().equals("-")) {
+            //after everything logged so far, so the report isn't interleaved with the run's output
+            Log.flush();
+            System.out.println(json);
+            return;
+        }
+        try {
+            Files.write(file.toPath(), (json + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Log.error("Could not write " + name + " to " + file.getPath() + ": " + e.getMessage());
+            summary.recordError();
         }
     }
 
-}
\ No newline at end of file
+}
@@ -1,132 +1,563 @@
 package com.icf.ecqm.structuredefinition.introgenerator.common;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.Future;
 
-public abstract class AbstractProcessor {
-    protected static final String SNAPSHOT = "snapshot";
-    protected static final String ELEMENT = "element";
-    protected static final String STRUCTURE_DEFINITION = "StructureDefinition";
-    protected static final String ID = "id";
-    protected static final String SHORT = "short";
-    protected static final String MUST_SUPPORT = "mustSupport";
-    protected static final String MIN = "min";
-    protected static final String MAX = "max";
+/**
+ * The run shared by the QI-Core and DEQM processors, as a pipeline of stages:
+ * <ol>
+ *     <li>discover: find the StructureDefinitions (the output folder's files or an archive's entries)</li>
+ *     <li>read: read them one after the other on {@link ProfileReader}'s reader thread</li>
+ *     <li>parse, classify and render: {@link #buildProfileResult} on the workers, or the incremental cache</li>
+ *     <li>splice: on the calling thread, in input order, write each intro into its intro file as soon as its profile
+ *     is done, while later profiles are still being read and parsed</li>
+ *     <li>aggregate: once every profile is in, save the cache, write the page (or the data file) and deal with the
+ *     intro files that are missing</li>
+ * </ol>
+ * The stages hand profiles on through bounded queues, so a fast stage waits for a slow one instead of piling work up.
+ * Subclasses only supply what differs per IG: classifying and rendering a profile, how an intro goes into its intro
+ * file, the page header, and where the intro files live.
+ *
+ * @param <C> the IG's classification of a profile's elements, which its intro and page entry are rendered from
+ */
+public abstract class AbstractProcessor<C> implements IntroProcessor {
+    private static final String STRUCTURE_DEFINITION = "StructureDefinition";
+    private static final String outputFolder = "output";
+    private static final FilenameFilter STRUCTURE_DEFINITION_FILTER = (dir, name) -> name.toLowerCase().startsWith(STRUCTURE_DEFINITION.toLowerCase()) &&
+            name.toLowerCase().endsWith(".json");
 
-    protected static final String beginTag = "<!--Begin Generated Intro Tag (DO NOT REMOVE)-->";
-    protected static final String endTag = "<!--End Generated Intro (DO NOT REMOVE)-->";
+    /**
+     * The folder holding the intro files, relative to the IG root.
+     */
+    protected abstract String getIntroFolder();
 
-    protected final String outputFolder;
-    protected final String pageContentFolder;
+    protected abstract boolean isIntroFile(String fileName);
 
-    public AbstractProcessor(String outputFolder, String pageContentFolder) {
-        this.outputFolder = outputFolder;
-        this.pageContentFolder = pageContentFolder;
+    /**
+     * The aggregate page, relative to the IG root.
+     */
+    protected abstract String getPageFile();
+
+    /**
+     * What console messages start with.
+     */
+    protected abstract String getNewLine();
+
+    /**
+     * The question asked before creating the intro files that are missing ({@link MissingFilePolicy#ASK}).
+     */
+    protected abstract String getMissingFilesQuestion(Collection<String> introFileNames);
+
+    /**
+     * What the intro file names end in, after "StructureDefinition-" and the profile's id.
+     */
+    protected abstract String getIntroFileSuffix();
+
+    /**
+     * What the page starts with, before the profiles' entries.
+     */
+    protected abstract String getPageHeader();
+
+    /**
+     * Sorts the profile's snapshot elements into the IG's lists.
+     */
+    protected abstract C classify(StructureDefinitionRecord structureDefinition);
+
+    /**
+     * @return the profile's entry on the page, or an empty string when the page shouldn't list it
+     */
+    protected abstract String renderPageEntry(C classification);
+
+    /**
+     * @param pageEntry what {@link #renderPageEntry} returned, for IGs whose intro wraps it
+     * @return the intro, or an empty string when no element passes the criteria
+     */
+    protected abstract String renderIntro(C classification, String pageEntry);
+
+    /**
+     * Adds the lists to the profile's data ({@link OutputMode#DATA}).
+     */
+    protected abstract void addData(IntroData data, C classification);
+
+    /**
+     * Puts the intro into the intro file's existing content, in place of any generated intro already there.
+     */
+    protected abstract StringBuilder spliceIntro(BufferedReader existingContent, String intro) throws IOException;
+
+    /**
+     * Parse, classify and render one StructureDefinition. The file is opened and parsed exactly once; id, title, type
+     * and snapshot are all read from that one tree. Touches no shared state so it can run on any worker thread.
+     *
+     * @param streaming read the file with {@link StreamingSnapshotExtractor} instead of building a full Gson tree
+     */
+    public ProfileResult buildProfileResult(File outputFile, boolean streaming) throws Exception {
+        return buildProfileResult(outputFile, streaming, RunMetrics.disabled());
     }
 
-    public void runProcessor() {
-        File outputDir = new File(outputFolder);
-        File[] outputFiles = outputDir.listFiles((dir, name) ->
-                name.toLowerCase().startsWith(STRUCTURE_DEFINITION.toLowerCase()) && name.toLowerCase().endsWith(".json")
-        );
+    /**
+     * @param metrics receives the parse, classify and render timings
+     */
+    public ProfileResult buildProfileResult(File outputFile, boolean streaming, RunMetrics metrics) throws Exception {
+        RunMetrics.Span parse = metrics.start(RunMetrics.PARSE);
+        StructureDefinitionRecord structureDefinition;
+        try (Reader reader = new Utf8FileReader(outputFile)) {
+            structureDefinition = streaming
+                    ? StreamingSnapshotExtractor.extract(reader)
+                    : StructureDefinitionRecord.fromJson(JsonParser.parseReader(reader).getAsJsonObject());
+        }
+        long bytes = metrics.isEnabled() ? outputFile.length() : 0;
+        parse.stop(bytes);
+        return buildProfileResult(outputFile.getName(), structureDefinition, bytes, parse, metrics);
+    }
 
-        if (outputFiles == null || outputFiles.length == 0) {
-            System.out.println("Output folder is empty!");
-            return;
+    /**
+     * Same for a StructureDefinition that was already read, from a file or an archive ({@link ProfileReader}).
+     */
+    public ProfileResult buildProfileResult(String name, byte[] json, boolean streaming, RunMetrics metrics) throws Exception {
+        RunMetrics.Span parse = metrics.start(RunMetrics.PARSE);
+        StructureDefinitionRecord structureDefinition;
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8)) {
+            structureDefinition = streaming
+                    ? StreamingSnapshotExtractor.extract(reader)
+                    : StructureDefinitionRecord.fromJson(JsonParser.parseReader(reader).getAsJsonObject());
         }
+        parse.stop(json.length);
+        return buildProfileResult(name, structureDefinition, json.length, parse, metrics);
+    }
+
+    private ProfileResult buildProfileResult(String name, StructureDefinitionRecord structureDefinition, long bytes,
+                                             RunMetrics.Span parse, RunMetrics metrics) {
+        String id = Objects.requireNonNull(structureDefinition.getId(), "StructureDefinition has no id");
+
+        String introNoteFileName = STRUCTURE_DEFINITION + "-" + id + getIntroFileSuffix();
+
+        RunMetrics.Span classify = metrics.start(RunMetrics.CLASSIFY);
+        C classification = classify(structureDefinition);
+        classify.stop(0);
+        RunMetrics.Span render = metrics.start(RunMetrics.RENDER);
+        String mdEntry = renderPageEntry(classification);
+        String structureDefinitionIntro = renderIntro(classification, mdEntry);
+        render.stop(structureDefinitionIntro.length() + mdEntry.length());
+        metrics.recordProfile(name, bytes, parse, classify, render);
+
+        String thisTitle = Objects.requireNonNull(structureDefinition.getTitle(), "StructureDefinition " + id + " has no title");
+        String htmlFileName = STRUCTURE_DEFINITION + "-" + id + ".html";
+
+        IntroData data = new IntroData(id, thisTitle, htmlFileName);
+        addData(data, classification);
+
+        //key is title:htmlFileName (split later for titling on generated page.)
+        return new ProfileResult(introNoteFileName, thisTitle + ":" + htmlFileName, structureDefinitionIntro, mdEntry, data);
+    }
+
+    /**
+     * Injects the mapped intro into the intro file; records the outcome (and any error) in the summary.
+     *
+     * @param createFile the file is known to be missing and is created on purpose
+     */
+    protected void writeToFile(File inputDir, Map<String, String> structureDefinitionIntroMap, String introFileName, boolean createFile,
+                               RunSummary summary, IntroFileCache introFiles, RunMetrics metrics) {
+        RunMetrics.Span splice = metrics.start(RunMetrics.SPLICE);
+        long bytes = 0;
+        try {
+            String injectableIntroBody = structureDefinitionIntroMap.get(introFileName);
+            if (injectableIntroBody == null || injectableIntroBody.isEmpty()) {
+                Log.debug(introFileName + " not mapped.");
+                return;
+            }
+            File introFile = new File(inputDir, introFileName);
+            byte[] existingBytes = introFiles.read(introFile);
+            if (createFile && existingBytes != null) {
+                Log.debug("File already exists: " + introFile.getName());
+                return;
+            }
+            String existingContent = existingBytes == null ? "" : new String(existingBytes, IntroFileWriter.CHARSET);
+            StringBuilder content = spliceIntro(new BufferedReader(new StringReader(existingContent)), injectableIntroBody);
+
+            boolean written = introFiles.writeIfChanged(introFile, existingBytes, content.toString());
+            summary.recordWrite(written);
+            bytes = content.length();
+
+            if (createFile) {
+                Log.info("File created: " + introFile.getName());
+            }
+            if (written) {
+                Log.info("Injectable intro body added to: " + introFile.getName());
+            } else {
+                Log.debug("Intro unchanged, file left untouched: " + introFile.getName());
+            }
+        } catch (Exception e) {
+            summary.recordError();
+            Log.error("Error creating file: " + introFileName, e);
+        } finally {
+            splice.stop(bytes);
+        }
+    }
+
+    /**
+     * Writes the page: the header, then every profile's entry under a link to its page, ordered by title.
+     */
+    protected void outputMDMapToFile(File mdFile, Map<String, String> mdMap, RunSummary summary, RunMetrics metrics) throws IOException {
+        RunMetrics.Span page = metrics.start(RunMetrics.PAGE);
+        StringBuilder mdPageBuilder = buildMDPage(mdMap);
+
+        String mdPage = "";
+        if (mdPageBuilder.length() > 0) {
+            mdPage = getPageHeader() + mdPageBuilder;
+            summary.recordWrite(IntroFileWriter.writeIfChanged(mdFile, mdPage));
+        }
+        page.stop(mdPage.length());
+    }
+
+    /**
+     * Renders the page from the profiles' entries (without the header), empty when no profile has an entry.
+     */
+    public static StringBuilder buildMDPage(Map<String, String> mdMap) {
+        List<String> sortableKeyList = new ArrayList<>(mdMap.keySet());
+        Collections.sort(sortableKeyList);
+
+        int length = 0;
+        for (String key : sortableKeyList) {
+            length += key.length() + mdMap.get(key).length() + 32;
+        }
+        StringBuilder mdPageBuilder = new StringBuilder(length);
+
+        for (String key : sortableKeyList) {
+            String pageContent = mdMap.get(key);
+            if (pageContent.isEmpty()) continue;
+
+            //key is title:htmlFileName
+            int titleEnd = key.indexOf(':');
+            int fileNameEnd = key.indexOf(':', titleEnd + 1);
+
+            mdPageBuilder.append("### [")
+                    .append(key, 0, titleEnd)
+                    .append("](")
+                    .append(key, titleEnd + 1, fileNameEnd == -1 ? key.length() : fileNameEnd)
+                    .append(") ###\n");
+
+            mdPageBuilder.append(pageContent)
+                    .append("<br>\n<br>\n\n");
+
+        }
+
+        return mdPageBuilder;
+    }
+
+    /**
+     * @return counts for the run; with {@link RunOptions#isWatch()} this only returns once watching stops
+     */
+    @Override
+    public RunSummary runMain(RunOptions options) {
+        RunMetrics metrics = RunMetrics.forOptions(options);
 
         Map<String, String> structureDefinitionIntroMap = new HashMap<>();
         Map<String, String> mdMap = new HashMap<>();
+        Map<String, ProfileResult> resultsByFileName = new HashMap<>();
+        IntroCache cache = options.isIncremental() ? IntroCache.load(options.resolve(IntroCache.DEFAULT_CACHE_FILE), getRuleKey()) : null;
+        IntroFileCache introFiles = new IntroFileCache();
+        RunSummary summary = new RunSummary();
 
-        for (File outputFile : outputFiles) {
-            System.out.println("\nProcessing " + outputFile.getAbsolutePath());
+        IntroSplicer splicer = options.getOutputMode() == OutputMode.PAGES ? new IntroSplicer(options, summary, introFiles, metrics) : null;
+        int profileCount = 0;
+        String source = options.getInputMode() == InputMode.FILES
+                ? options.resolve(outputFolder).getPath()
+                : options.resolve(options.getInputMode().getArchivePath()).getPath();
+        //profiles are independent, so they are read and parsed ahead on other threads; results come back in input order:
+        try (ProfileReader<ProfileResult> reader = startProfiles(options, cache, metrics)) {
+            for (PendingProfile<ProfileResult> profile = reader.next(); profile != null; profile = reader.next()) {
+                profileCount++;
+                Log.debug(getNewLine() + "Processing " + profile.getPath());
 
-            try {
-                JsonObject outputJson = parseJsonFromFile(outputFile);
-                String id = outputJson.get(ID).getAsString();
-                String structureDefinitionIntro = buildStructureDefinitionIntro(outputJson.toString());
-
-                if (!structureDefinitionIntro.isEmpty()) {
-                    String introNoteFileName = "StructureDefinition-" + id + "-intro.md";
-                    structureDefinitionIntroMap.put(introNoteFileName, structureDefinitionIntro);
-                    mdMap.put(id, structureDefinitionIntro);
+                try {
+                    ProfileResult profileResult = ProfileTaskRunner.await(profile.getResult());
+                    resultsByFileName.put(profile.getName(), profileResult);
+                    recordProfileResult(profileResult, structureDefinitionIntroMap, mdMap);
+                    summary.recordProcessed(!profileResult.getIntro().isEmpty());
+                    if (splicer != null) {
+                        splicer.splice(profileResult, structureDefinitionIntroMap);
+                    }
+                } catch (Exception e) {
+                    summary.recordError();
+                    Log.error("Error processing file: " + profile.getName(), e);
                 }
-            } catch (Exception e) {
-                System.err.println("Error processing file: " + outputFile.getName());
-                e.printStackTrace();
             }
+        } catch (IOException e) {
+            summary.recordError();
+            Log.error("Could not read " + source, e);
         }
 
-        try {
-            outputMDMapToFile(mdMap);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        if (profileCount == 0) {
+            Log.info(options.getInputMode() == InputMode.FILES
+                    ? "Output folder is empty!"
+                    : "No StructureDefinitions in " + options.getInputMode().getArchivePath());
+            if (!options.isWatch()) {
+                return summary.finish();
+            }
+        } else {
+            if (cache != null) {
+                RunMetrics.Span cacheSave = metrics.start(RunMetrics.CACHE);
+                try {
+                    cache.save();
+                } catch (IOException e) {
+                    Log.error("Could not write cache file " + options.resolve(IntroCache.DEFAULT_CACHE_FILE).getPath() + ": " + e.getMessage());
+                }
+                cacheSave.stop(0);
+                Log.info(cache.getSummary());
+            }
+
+            if (options.getOutputMode() == OutputMode.DATA) {
+                IntroDataFile.write(options.resolve(IntroDataFile.DEFAULT_FILE), resultsByFileName.values(), summary, metrics);
+            } else {
+                writePages(options, structureDefinitionIntroMap, mdMap, summary, splicer);
+            }
+            if (metrics.isEnabled()) {
+                summary.setMetrics(metrics.finish());
+            }
+            Log.info(getNewLine() + summary.finish());
+            Log.info(getNewLine());
         }
 
-        processIntroFiles(structureDefinitionIntroMap);
+        Log.info("File modification is done. Generating the IG should show updated element list in files above.");
+
+        if (options.isWatch()) {
+            watchOutputFolder(options, cache, resultsByFileName, structureDefinitionIntroMap, mdMap, introFiles);
+        }
+        return summary;
     }
 
-    private void processIntroFiles(Map<String, String> structureDefinitionIntroMap) {
-        File inputDir = new File(pageContentFolder);
-        File[] inputFiles = inputDir.listFiles((dir, name) -> name.endsWith(".md"));
+    /**
+     * The splice stage of {@link OutputMode#PAGES} runs: lists the intro folder once, then injects each profile's
+     * intro into its file as soon as the profile is done. Two profiles with the same intro file (ie the same id) both
+     * write it, and the later one's intro is what it ends up with, as it is what the map holds at the end.
+     */
+    private final class IntroSplicer {
+        private final RunSummary summary;
+        private final IntroFileCache introFiles;
+        private final RunMetrics metrics;
+        private final File inputDir;
+        private final Set<String> listedFileNames = new HashSet<>();
 
-        Set<String> introFilesNotFound = new HashSet<>(structureDefinitionIntroMap.keySet());
+        private IntroSplicer(RunOptions options, RunSummary summary, IntroFileCache introFiles, RunMetrics metrics) {
+            this.summary = summary;
+            this.introFiles = introFiles;
+            this.metrics = metrics;
+            this.inputDir = options.resolve(getIntroFolder());
 
-        if (inputFiles != null) {
-            for (File file : inputFiles) {
-                introFilesNotFound.remove(file.getName());
+            RunMetrics.Span listing = metrics.start(RunMetrics.LIST);
+            File[] inputFiles = inputDir.listFiles((dir, name) -> isIntroFile(name));
+            listing.stop(0);
+            if (inputFiles != null) {
+                for (File file : inputFiles) {
+                    listedFileNames.add(file.getName());
+                }
             }
-            for (File inputFile : inputFiles) {
-                writeToFile(structureDefinitionIntroMap, inputFile.getName(), false);
+        }
+
+        private void splice(ProfileResult profileResult, Map<String, String> structureDefinitionIntroMap) {
+            //files that aren't there are left for the missing files question at the end
+            if (!profileResult.getIntro().isEmpty() && listedFileNames.contains(profileResult.getIntroFileName())) {
+                writeToFile(inputDir, structureDefinitionIntroMap, profileResult.getIntroFileName(), false, summary, introFiles, metrics);
             }
         }
+    }
+
+    /**
+     * Writes the aggregate page and creates the intro files that are missing ({@link OutputMode#PAGES}); the intro
+     * files that exist were already written by the splice stage.
+     */
+    private void writePages(RunOptions options, Map<String, String> structureDefinitionIntroMap, Map<String, String> mdMap,
+                            RunSummary summary, IntroSplicer splicer) {
+        //create our collection md file:
+        try {
+            outputMDMapToFile(options.resolve(getPageFile()), mdMap, summary, splicer.metrics);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        Set<String> introFilesNotFound = new HashSet<>(structureDefinitionIntroMap.keySet());
+        introFilesNotFound.removeAll(splicer.listedFileNames);
+        Log.debug(String.join(", ", introFilesNotFound));
 
+        //some intro files weren't found in the directory so we ask user (or go by --missing) if we should create them:
         if (!introFilesNotFound.isEmpty()) {
-            System.out.println("Some intro files were missing: " + String.join(", ", introFilesNotFound));
+            summary.recordMissing(introFilesNotFound.size());
+            if (options.getMissingFilePolicy().shouldCreate(introFilesNotFound, getMissingFilesQuestion(introFilesNotFound))) {
+                Log.info("Creating files...");
+                for (String introFileName : introFilesNotFound) {
+
+                    writeToFile(splicer.inputDir, structureDefinitionIntroMap, introFileName, true, summary, splicer.introFiles, splicer.metrics);
+                }
+            }
         }
     }
 
-    private static JsonObject parseJsonFromFile(File file) throws Exception {
-        try (Reader reader = new FileReader(file)) {
-            return JsonParser.parseReader(reader).getAsJsonObject();
+    /**
+     * Keeps the engine warm and, until the process is stopped, regenerates and re-injects only the intros of
+     * StructureDefinitions that are created, modified or deleted in the output folder.
+     */
+    private void watchOutputFolder(RunOptions options, IntroCache cache, Map<String, ProfileResult> resultsByFileName,
+                                   Map<String, String> structureDefinitionIntroMap, Map<String, String> mdMap,
+                                   IntroFileCache introFiles) {
+        File outputDir = options.resolve(outputFolder);
+        File inputDir = options.resolve(getIntroFolder());
+        Log.info(getNewLine() + "Watching " + outputDir.getAbsolutePath() + " for changes (Ctrl+C to stop)...");
+
+        try (OutputWatcher watcher = new OutputWatcher(outputDir, STRUCTURE_DEFINITION_FILTER, OutputWatcher.DEFAULT_DEBOUNCE_MILLIS)) {
+            watcher.watch((changedFiles, deletedFiles) -> {
+                RunSummary summary = new RunSummary();
+
+                for (File deletedFile : deletedFiles) {
+                    Log.info(getNewLine() + "Removed " + deletedFile.getAbsolutePath());
+                    forgetProfileResult(resultsByFileName.remove(deletedFile.getName()), structureDefinitionIntroMap, mdMap);
+                    if (cache != null) {
+                        cache.remove(deletedFile.getName());
+                    }
+                }
+
+                File[] files = changedFiles.toArray(new File[0]);
+                List<Future<ProfileResult>> profileResults = runProfiles(files, options, cache, RunMetrics.disabled());
+                List<String> introFileNames = new ArrayList<>();
+                for (int i = 0; i < files.length; i++) {
+                    Log.debug(getNewLine() + "Processing " + files[i].getAbsolutePath());
+                    try {
+                        ProfileResult profileResult = ProfileTaskRunner.await(profileResults.get(i));
+                        forgetProfileResult(resultsByFileName.put(files[i].getName(), profileResult), structureDefinitionIntroMap, mdMap);
+                        recordProfileResult(profileResult, structureDefinitionIntroMap, mdMap);
+                        summary.recordProcessed(!profileResult.getIntro().isEmpty());
+                        introFileNames.add(profileResult.getIntroFileName());
+                    } catch (Exception e) {
+                        summary.recordError();
+                        //publisher may still be writing it; the next modification triggers another attempt
+                        Log.error("Error processing file: " + files[i].getName(), e);
+                    }
+                }
+
+                if (cache != null) {
+                    cache.save();
+                }
+                if (options.getOutputMode() == OutputMode.DATA) {
+                    IntroDataFile.write(options.resolve(IntroDataFile.DEFAULT_FILE), resultsByFileName.values(), summary, RunMetrics.disabled());
+                } else {
+                    outputMDMapToFile(options.resolve(getPageFile()), mdMap, summary, RunMetrics.disabled());
+
+                    for (String introFileName : introFileNames) {
+                        if (new File(inputDir, introFileName).isFile()) {
+                            writeToFile(inputDir, structureDefinitionIntroMap, introFileName, false, summary, introFiles, RunMetrics.disabled());
+                        } else if (structureDefinitionIntroMap.containsKey(introFileName)) {
+                            summary.recordMissing(1);
+                            Log.info("Intro file missing (not created in watch mode): " + introFileName);
+                        }
+                    }
+                }
+
+                Log.info(getNewLine() + "Regenerated: " + summary.finish());
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    private static void writeToFile(Map<String, String> structureDefinitionIntroMap, String introFileName, boolean createFile) {
-        try {
-            String content = structureDefinitionIntroMap.get(introFileName);
-            if (content == null || content.isEmpty()) return;
+    @Override
+    public RunSummary runFiles(RunOptions options, File[] outputFiles) {
+        File inputDir = options.resolve(getIntroFolder());
+        Map<String, String> structureDefinitionIntroMap = new HashMap<>();
+        Map<String, String> mdMap = new HashMap<>();
+        IntroFileCache introFiles = new IntroFileCache();
+        RunSummary summary = new RunSummary();
 
-            File introFile = new File("input/pagecontent/" + introFileName);
-            if (createFile && introFile.createNewFile()) {
-                System.out.println("File created: " + introFile.getName());
+        List<Future<ProfileResult>> profileResults = runProfiles(outputFiles, options, null, RunMetrics.disabled());
+        for (int i = 0; i < outputFiles.length; i++) {
+            Log.debug(getNewLine() + "Processing " + outputFiles[i].getAbsolutePath());
+            try {
+                ProfileResult profileResult = ProfileTaskRunner.await(profileResults.get(i));
+                recordProfileResult(profileResult, structureDefinitionIntroMap, mdMap);
+                summary.recordProcessed(!profileResult.getIntro().isEmpty());
+            } catch (Exception e) {
+                summary.recordError();
+                Log.error("Error processing file: " + outputFiles[i].getName(), e);
             }
+        }
 
-            BufferedWriter writer = new BufferedWriter(new FileWriter(introFile));
-            writer.write(content);
-            writer.close();
+        for (String introFileName : structureDefinitionIntroMap.keySet()) {
+            if (new File(inputDir, introFileName).isFile()) {
+                writeToFile(inputDir, structureDefinitionIntroMap, introFileName, false, summary, introFiles, RunMetrics.disabled());
+            } else {
+                summary.recordMissing(1);
+                if (options.getMissingFilePolicy() == MissingFilePolicy.CREATE) {
+                    writeToFile(inputDir, structureDefinitionIntroMap, introFileName, true, summary, introFiles, RunMetrics.disabled());
+                } else {
+                    Log.info("Intro file missing: " + introFileName);
+                }
+            }
+        }
+        return summary.finish();
+    }
 
-            System.out.println("Injected intro body into: " + introFile.getName());
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.out.println("Error creating file: " + introFileName);
+    /**
+     * Starts reading the run's input (the output folder's files or an archive) and handing its StructureDefinitions
+     * to the workers.
+     */
+    private ProfileReader<ProfileResult> startProfiles(RunOptions options, IntroCache cache, RunMetrics metrics) {
+        ProfileArchive.EntryTask<ProfileResult> task = (name, json) -> cache == null
+                ? buildProfileResult(name, json, options.isStreaming(), metrics)
+                : cache.get(name, json, () -> buildProfileResult(name, json, options.isStreaming(), metrics));
+        if (options.getInputMode() != InputMode.FILES) {
+            return ProfileReader.start(options.resolve(options.getInputMode().getArchivePath()), options, metrics, task);
         }
+
+        //cycle through all json structure defintion files in output folder:
+        File outputDir = options.resolve(outputFolder);
+        RunMetrics.Span discovery = metrics.start(RunMetrics.DISCOVER);
+        File[] outputFiles = ProfileDiscovery.discover(outputDir, options.getDiscoveryMode());
+        discovery.stop(0);
+        Log.debug("outputFiles: \n\n" + Arrays.toString(outputFiles));
+
+        //the streaming engine reads each file as it parses it, so only the tree engine's files are read ahead
+        return options.isStreaming()
+                ? ProfileReader.start(outputFiles, options, fileTask(options, cache, metrics))
+                : ProfileReader.start(outputFiles, options, metrics, task);
     }
 
-    private static void outputMDMapToFile(Map<String, String> mdMap) throws IOException {
-        BufferedWriter writer = new BufferedWriter(new FileWriter("musthave-qi-list.md"));
-        for (Map.Entry<String, String> entry : mdMap.entrySet()) {
-            writer.write("### [" + entry.getKey() + "](StructureDefinition-" + entry.getKey() + ".html)\n");
-            writer.write(entry.getValue());
-            writer.write("\n\n");
+    private List<Future<ProfileResult>> runProfiles(File[] outputFiles, RunOptions options, IntroCache cache, RunMetrics metrics) {
+        return ProfileTaskRunner.runAll(outputFiles, options, fileTask(options, cache, metrics));
+    }
+
+    private ProfileTaskRunner.ProfileTask<ProfileResult> fileTask(RunOptions options, IntroCache cache, RunMetrics metrics) {
+        return outputFile -> cache == null
+                ? buildProfileResult(outputFile, options.isStreaming(), metrics)
+                : cache.get(outputFile, file -> buildProfileResult(file, options.isStreaming(), metrics));
+    }
+
+    protected static void recordProfileResult(ProfileResult profileResult, Map<String, String> structureDefinitionIntroMap, Map<String, String> mdMap) {
+        String introNoteFileName = profileResult.getIntroFileName();
+        String structureDefinitionIntro = profileResult.getIntro();
+
+        mdMap.put(profileResult.getMdKey(), profileResult.getMdEntry());
+
+        if (!structureDefinitionIntro.isEmpty()) {
+            if (Log.isDebugEnabled()) {
+                Log.debug("Intro generated: " + introNoteFileName + ": \n" + structureDefinitionIntro);
+            }
+            structureDefinitionIntroMap.put(introNoteFileName, structureDefinitionIntro);
+        } else {
+            Log.debug("No intro generated (no elements pass criteria): " + introNoteFileName + ": \n" + structureDefinitionIntro);
         }
-        writer.close();
     }
 
-    public abstract String buildStructureDefinitionIntro(String jsonString);
+    /**
+     * Drops a profile's previous result from the maps before it is replaced or removed.
+     */
+    private static void forgetProfileResult(ProfileResult previousResult, Map<String, String> structureDefinitionIntroMap, Map<String, String> mdMap) {
+        if (previousResult != null) {
+            structureDefinitionIntroMap.remove(previousResult.getIntroFileName());
+            mdMap.remove(previousResult.getMdKey());
+        }
+    }
 }
@@ -0,0 +1,26 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.util.Locale;
+
+/**
+ * How a run finds the StructureDefinitions in the output folder.
+ */
+public enum DiscoveryMode {
+    /**
+     * Select them from the publisher's .index.json package manifest, listing the folder only when there is none (the
+     * default).
+     */
+    INDEX,
+    /**
+     * Always list the folder for StructureDefinition*.json.
+     */
+    LIST;
+
+    public static DiscoveryMode fromString(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown discovery mode '" + value + "', expected index or list");
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Element-id hierarchy built while walking snapshot.element once. FHIR snapshots list every element after its parent,
+ * so by the time an element is added its parent node already exists and has already been classified; classifiers mark
+ * the lists a node made with {@link Node#addToList(int)} and children consult that mark instead of re-scanning.
+ */
+public class ElementIndex {
+
+    private final Map<String, Node> nodesById = new HashMap<>();
+
+    public static class Node {
+        private final ElementRecord element;
+        private final Node parent;
+        private final int depth;
+        private final boolean sliced;
+        private int lists;
+
+        private Node(ElementRecord element, Node parent, int depth, boolean sliced) {
+            this.element = element;
+            this.parent = parent;
+            this.depth = depth;
+            this.sliced = sliced;
+        }
+
+        public ElementRecord getElement() {
+            return element;
+        }
+
+        /**
+         * Nearest ancestor present in the snapshot, or null for the root element.
+         */
+        public Node getParent() {
+            return parent;
+        }
+
+        /**
+         * Number of id segments: 1 for the root ("Observation"), 2 for its direct children ("Observation.code") etc.
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * True when the id names a slice anywhere along its path ("Patient.extension:race", "Observation.component:systolic.code").
+         */
+        public boolean isSliced() {
+            return sliced;
+        }
+
+        public void addToList(int list) {
+            lists |= 1 << list;
+        }
+
+        public boolean isInList(int list) {
+            return (lists & (1 << list)) != 0;
+        }
+
+        /**
+         * Top level elements and slices are always considered; anything nested deeper only if its parent made the same list.
+         */
+        public boolean isEligibleFor(int list) {
+            return depth <= 2 || sliced || (parent != null && parent.isInList(list));
+        }
+    }
+
+    public Node add(ElementRecord element) {
+        String id = element.getId();
+        if (id == null) {
+            throw new IllegalStateException("Snapshot element has neither an id nor a path");
+        }
+
+        int depth = 1;
+        for (int i = 0; i < id.length(); i++) {
+            if (id.charAt(i) == '.') {
+                depth++;
+            }
+        }
+
+        Node node = new Node(element, findParent(id), depth, id.indexOf(':') >= 0);
+        nodesById.put(id, node);
+        return node;
+    }
+
+    private Node findParent(String id) {
+        int dotIndex = id.lastIndexOf('.');
+        while (dotIndex > 0) {
+            Node parent = nodesById.get(id.substring(0, dotIndex));
+            if (parent != null) {
+                return parent;
+            }
+            dotIndex = id.lastIndexOf('.', dotIndex - 1);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,78 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compact view of a single snapshot ElementDefinition. Holds only the fields the intro generators read
+ * (id, path, sliceName, short, min, max, mustSupport and the element's extension urls); constraints, bindings,
+ * mappings etc. are never materialized.
+ */
+public class ElementRecord {
+    private final String id;
+    private final String path;
+    private final String sliceName;
+    private final String shortDesc;
+    private final Integer min;
+    private final String max;
+    private final Boolean mustSupport;
+    private final List<String> extensionUrls;
+
+    /**
+     * @param id the element id; when the snapshot leaves it out it is derived from path (and sliceName), which is what
+     *           the id of an element that is only sliced at its last segment looks like
+     */
+    public ElementRecord(String id, String path, String sliceName, String shortDesc, Integer min, String max,
+                         Boolean mustSupport, List<String> extensionUrls) {
+        this.id = id != null || path == null ? id : sliceName != null ? path + ":" + sliceName : path;
+        this.path = path;
+        this.sliceName = sliceName;
+        this.shortDesc = shortDesc;
+        this.min = min;
+        this.max = max;
+        this.mustSupport = mustSupport;
+        this.extensionUrls = extensionUrls == null ? Collections.emptyList() : extensionUrls;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getSliceName() {
+        return sliceName;
+    }
+
+    public boolean hasSliceName() {
+        return sliceName != null;
+    }
+
+    /**
+     * The raw "short" description, or null when the element has none.
+     */
+    public String getShort() {
+        return shortDesc;
+    }
+
+    public Integer getMin() {
+        return min;
+    }
+
+    public String getMax() {
+        return max;
+    }
+
+    /**
+     * The mustSupport flag, or null when the element doesn't declare one (which is not the same as false).
+     */
+    public Boolean getMustSupport() {
+        return mustSupport;
+    }
+
+    public boolean hasExtension(String url) {
+        return extensionUrls.contains(url);
+    }
+}
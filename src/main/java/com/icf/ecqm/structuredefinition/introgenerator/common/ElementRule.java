@@ -0,0 +1,72 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One compiled condition of a {@link RuleSet} list. Each reads a single field of the {@link ElementRecord}, which
+ * already holds everything the rules look at, so evaluating a rule never goes back to the JSON.
+ */
+@FunctionalInterface
+public interface ElementRule {
+
+    boolean matches(ElementRecord element);
+
+    /**
+     * min equals the value (an element without min never matches).
+     */
+    static ElementRule min(int value) {
+        return element -> element.getMin() != null && element.getMin() == value;
+    }
+
+    /**
+     * max is one of the values (an element without max never matches).
+     */
+    static ElementRule maxIn(Set<String> values) {
+        if (values.size() == 1) {
+            String value = values.iterator().next();
+            return element -> value.equals(element.getMax());
+        }
+        return element -> element.getMax() != null && values.contains(element.getMax());
+    }
+
+    /**
+     * mustSupport is declared and equals the value; an element that doesn't declare it matches neither true nor false.
+     */
+    static ElementRule mustSupport(boolean value) {
+        Boolean expected = value;
+        return element -> expected.equals(element.getMustSupport());
+    }
+
+    static ElementRule hasExtension(String url) {
+        return element -> element.hasExtension(url);
+    }
+
+    /**
+     * All of the rules, checked in the given order; no rules match every element.
+     */
+    static ElementRule all(List<ElementRule> rules) {
+        switch (rules.size()) {
+            case 0:
+                return element -> true;
+            case 1:
+                return rules.get(0);
+            case 2: {
+                ElementRule first = rules.get(0);
+                ElementRule second = rules.get(1);
+                return element -> first.matches(element) && second.matches(element);
+            }
+            default: {
+                ElementRule[] array = rules.toArray(new ElementRule[0]);
+                return element -> {
+                    for (ElementRule rule : array) {
+                        if (!rule.matches(element)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                };
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.util.Locale;
+
+/**
+ * Where a run reads the StructureDefinitions from.
+ */
+public enum InputMode {
+    /**
+     * One StructureDefinition-*.json file per profile in the output folder (the default).
+     */
+    FILES(null),
+    /**
+     * The entries of the publisher's definitions.json.zip, see {@link ProfileArchive}.
+     */
+    DEFINITIONS("output/definitions.json.zip"),
+    /**
+     * The package/ entries of the IG's FHIR package, see {@link ProfileArchive}.
+     */
+    PACKAGE("output/package.tgz");
+
+    private final String archivePath;
+
+    InputMode(String archivePath) {
+        this.archivePath = archivePath;
+    }
+
+    /**
+     * @return the archive, relative to the IG root, or null for {@link #FILES}
+     */
+    public String getArchivePath() {
+        return archivePath;
+    }
+
+    public static InputMode fromString(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown input mode '" + value + "', expected files, definitions or package");
+        }
+    }
+}
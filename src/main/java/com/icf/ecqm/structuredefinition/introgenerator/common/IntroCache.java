@@ -0,0 +1,233 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * On-disk cache of generated intros for incremental runs.
+ * <p>
+ * Entries are keyed by StructureDefinition file name and hold a SHA-256 of the tool version, the engine's rule key and
+ * the file's bytes, along with the {@link ProfileResult} generated from it. A profile whose hash still matches is served from the cache
+ * without being parsed. Only entries looked up during the current run are written back on {@link #save()}, so profiles
+ * that were removed, changed or failed are evicted. The file is replaced atomically, so an interrupted save leaves the
+ * previous cache intact.
+ * <p>
+ * Lookups are thread-safe so the cache can be used from the worker pool.
+ */
+public class IntroCache {
+    public static final String DEFAULT_CACHE_FILE = ".intro-generator-cache.json";
+
+    /**
+     * Layout of the cache file; a file in another format is discarded on load.
+     */
+    private static final int FORMAT_VERSION = 4;
+    /**
+     * Version of the code that classifies elements and renders intros and page entries. Bump it whenever that output
+     * changes for unchanged rules, so entries generated by an older tool are regenerated rather than served.
+     */
+    private static final int RENDERER_VERSION = 1;
+    /**
+     * Hashed into every entry: the renderer version, plus the jar's implementation version when run from a built jar.
+     */
+    private static final String TOOL_KEY = RENDERER_VERSION + "/" + IntroCache.class.getPackage().getImplementationVersion();
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private final File cacheFile;
+    private final String ruleKey;
+    private final Map<String, Entry> previousEntries;
+    private final Map<String, Entry> currentEntries = new ConcurrentHashMap<>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    private static class Entry {
+        private final String hash;
+        private final ProfileResult result;
+
+        private Entry(String hash, ProfileResult result) {
+            this.hash = hash;
+            this.result = result;
+        }
+    }
+
+    private IntroCache(File cacheFile, String ruleKey, Map<String, Entry> previousEntries) {
+        this.cacheFile = cacheFile;
+        this.ruleKey = ruleKey;
+        this.previousEntries = previousEntries;
+    }
+
+    /**
+     * Loads the cache file if there is one. A missing, unreadable or older-format file just starts an empty cache.
+     */
+    public static IntroCache load(File cacheFile, String ruleKey) {
+        Map<String, Entry> entries = new ConcurrentHashMap<>();
+        if (cacheFile.isFile()) {
+            try (Reader reader = Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+                JsonObject root = JsonParser.parseReader(reader).getAsJsonObject();
+                if (root.has("version") && root.get("version").getAsInt() == FORMAT_VERSION) {
+                    for (Map.Entry<String, JsonElement> cached : root.getAsJsonObject("entries").entrySet()) {
+                        JsonObject entryObj = cached.getValue().getAsJsonObject();
+                        entries.put(cached.getKey(), new Entry(entryObj.get("hash").getAsString(), new ProfileResult(
+                                entryObj.get("introFileName").getAsString(),
+                                entryObj.get("mdKey").getAsString(),
+                                entryObj.get("intro").getAsString(),
+                                entryObj.get("mdEntry").getAsString(),
+                                entryObj.has("data") ? IntroData.fromJsonObject(entryObj.getAsJsonObject("data")) : null)));
+                    }
+                }
+            } catch (Exception e) {
+                Log.warn("Ignoring unreadable cache file " + cacheFile.getPath() + ": " + e.getMessage());
+                entries.clear();
+            }
+        }
+        return new IntroCache(cacheFile, ruleKey, entries);
+    }
+
+    /**
+     * Returns the cached result for the file if its content (and the rule key) is unchanged, otherwise builds it
+     * and records the new result.
+     */
+    public ProfileResult get(File file, ProfileTaskRunner.ProfileTask<ProfileResult> builder) throws Exception {
+        return get(file.getName(), hash(file), () -> builder.process(file));
+    }
+
+    /**
+     * Same for a StructureDefinition read from an archive ({@link ProfileArchive}); the entry name is the file name,
+     * so runs over the files and over an archive share entries.
+     */
+    public ProfileResult get(String name, byte[] content, Callable<ProfileResult> builder) throws Exception {
+        MessageDigest digest = newDigest();
+        digest.update(content);
+        return get(name, hex(digest), builder);
+    }
+
+    private ProfileResult get(String name, String hash, Callable<ProfileResult> builder) throws Exception {
+        Entry cached = previousEntries.get(name);
+
+        ProfileResult result;
+        if (cached != null && cached.hash.equals(hash)) {
+            hits.incrementAndGet();
+            result = cached.result;
+        } else {
+            misses.incrementAndGet();
+            result = builder.call();
+        }
+        currentEntries.put(name, new Entry(hash, result));
+        return result;
+    }
+
+    /**
+     * Drops the entry of a StructureDefinition that was deleted, so it isn't written back on the next {@link #save()}.
+     */
+    public void remove(String fileName) {
+        currentEntries.remove(fileName);
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Previous entries that weren't looked up (or didn't produce a result) this run and will be dropped on save.
+     */
+    public int getEvictions() {
+        int evictions = 0;
+        for (String fileName : previousEntries.keySet()) {
+            Entry current = currentEntries.get(fileName);
+            if (current == null || !current.hash.equals(previousEntries.get(fileName).hash)) {
+                evictions++;
+            }
+        }
+        return evictions;
+    }
+
+    public String getSummary() {
+        return "Incremental cache: " + getHits() + " unchanged (served from cache), " + getMisses() + " regenerated, "
+                + getEvictions() + " stale entries evicted.";
+    }
+
+    /**
+     * Writes this run's entries back to the cache file, replacing its previous content.
+     */
+    public void save() throws IOException {
+        StringWriter content = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(content)) {
+            writer.beginObject();
+            writer.name("version").value(FORMAT_VERSION);
+            writer.name("entries").beginObject();
+            for (Map.Entry<String, Entry> entry : currentEntries.entrySet()) {
+                ProfileResult result = entry.getValue().result;
+                writer.name(entry.getKey()).beginObject()
+                        .name("hash").value(entry.getValue().hash)
+                        .name("introFileName").value(result.getIntroFileName())
+                        .name("mdKey").value(result.getMdKey())
+                        .name("intro").value(result.getIntro())
+                        .name("mdEntry").value(result.getMdEntry());
+                if (result.getData() != null) {
+                    writer.name("data").jsonValue(result.getData().toJsonObject().toString());
+                }
+                writer.endObject();
+            }
+            writer.endObject();
+            writer.endObject();
+        }
+        IntroFileWriter.writeIfChanged(cacheFile, content.toString());
+    }
+
+    private String hash(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return hex(digest);
+    }
+
+    /**
+     * A digest already holding the tool and rule keys, for the content to be added.
+     */
+    private MessageDigest newDigest() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(TOOL_KEY.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(ruleKey.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        return digest;
+    }
+
+    private static String hex(MessageDigest digest) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
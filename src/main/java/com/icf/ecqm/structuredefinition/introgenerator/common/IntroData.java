@@ -0,0 +1,114 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * The classified elements of one profile, as written to the {@link IntroDataFile}: its title and page, each list
+ * the engine fills (ie mustHave, qiElements or mustSupport, in intro order) and the primary code path if it has one.
+ * List entries are the intros' "element: short description" lines.
+ */
+public class IntroData {
+    private final String id;
+    private final String title;
+    private final String page;
+    private final Map<String, List<String>> lists = new LinkedHashMap<>();
+    private String primaryCodePath;
+
+    public IntroData(String id, String title, String page) {
+        this.id = id;
+        this.title = title;
+        this.page = page;
+    }
+
+    /**
+     * Adds a list in the given order; empty lists are left out of the file. Entries are kept through the
+     * {@link StringPool}, as they repeat across profiles and live as long as the run.
+     */
+    public IntroData addList(String name, Collection<String> entries) {
+        if (!entries.isEmpty()) {
+            List<String> pooled = new ArrayList<>(entries.size());
+            for (String entry : entries) {
+                pooled.add(StringPool.intern(entry));
+            }
+            lists.put(name, pooled);
+        }
+        return this;
+    }
+
+    /**
+     * @param primaryCodePath null or empty for none
+     */
+    public IntroData setPrimaryCodePath(String primaryCodePath) {
+        this.primaryCodePath = primaryCodePath == null || primaryCodePath.isEmpty() ? null : primaryCodePath;
+        return this;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Writes the profile's object (the value under its id).
+     */
+    void write(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("title").value(title);
+        writer.name("page").value(page);
+        for (Map.Entry<String, List<String>> list : lists.entrySet()) {
+            writer.name(list.getKey()).beginArray();
+            for (String entry : list.getValue()) {
+                //element names never contain ": ", short descriptions may
+                int separator = entry.indexOf(": ");
+                writer.beginObject()
+                        .name("element").value(separator == -1 ? entry : entry.substring(0, separator))
+                        .name("short").value(separator == -1 ? "" : entry.substring(separator + 2))
+                        .endObject();
+            }
+            writer.endArray();
+        }
+        if (primaryCodePath != null) {
+            writer.name("primaryCodePath").value(primaryCodePath);
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Form kept in the {@link IntroCache}.
+     */
+    JsonObject toJsonObject() {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", id);
+        json.addProperty("title", title);
+        json.addProperty("page", page);
+        JsonObject listsJson = new JsonObject();
+        for (Map.Entry<String, List<String>> list : lists.entrySet()) {
+            JsonArray entries = new JsonArray();
+            list.getValue().forEach(entries::add);
+            listsJson.add(list.getKey(), entries);
+        }
+        json.add("lists", listsJson);
+        if (primaryCodePath != null) {
+            json.addProperty("primaryCodePath", primaryCodePath);
+        }
+        return json;
+    }
+
+    static IntroData fromJsonObject(JsonObject json) {
+        IntroData data = new IntroData(json.get("id").getAsString(), json.get("title").getAsString(), json.get("page").getAsString());
+        for (Map.Entry<String, JsonElement> list : json.getAsJsonObject("lists").entrySet()) {
+            List<String> entries = new ArrayList<>();
+            list.getValue().getAsJsonArray().forEach(entry -> entries.add(entry.getAsString()));
+            data.addList(list.getKey(), entries);
+        }
+        if (json.has("primaryCodePath")) {
+            data.setPrimaryCodePath(json.get("primaryCodePath").getAsString());
+        }
+        return data;
+    }
+}
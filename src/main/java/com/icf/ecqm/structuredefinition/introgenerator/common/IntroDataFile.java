@@ -0,0 +1,71 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Jekyll data file with the classified elements of every profile (--output-mode data), keyed by profile id:
+ * <pre>
+ * {"qicore-patient": {"title": "...", "page": "StructureDefinition-qicore-patient.html",
+ *     "mustHave": [{"element": "identifier", "short": "..."}], "qiElements": [...], "primaryCodePath": "..."}}
+ * </pre>
+ * The IG templates render it through site.data.intros[id]. Profiles are written sorted by id, compact and in UTF-8,
+ * and the file is only replaced when its content changes, so one unchanged profile set leaves it (and every page
+ * that reads it) untouched.
+ */
+public final class IntroDataFile {
+    public static final String DEFAULT_FILE = "input/data/intros.json";
+
+    private IntroDataFile() {
+    }
+
+    /**
+     * Writes the data of every result that has some, recording the write (or the error) in the summary.
+     */
+    public static void write(File file, Collection<ProfileResult> results, RunSummary summary, RunMetrics metrics) {
+        RunMetrics.Span page = metrics.start(RunMetrics.PAGE);
+        long bytes = 0;
+        try {
+            byte[] json = toJson(results);
+            bytes = json.length;
+            Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+            summary.recordWrite(IntroFileWriter.writeIfChanged(file, IntroFileWriter.readExisting(file), json));
+        } catch (IOException e) {
+            summary.recordError();
+            Log.error("Could not write " + file.getPath(), e);
+        } finally {
+            page.stop(bytes);
+        }
+    }
+
+    static byte[] toJson(Collection<ProfileResult> results) throws IOException {
+        List<IntroData> profiles = new ArrayList<>();
+        for (ProfileResult result : results) {
+            if (result.getData() != null) {
+                profiles.add(result.getData());
+            }
+        }
+        profiles.sort(Comparator.comparing(IntroData::getId));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            writer.beginObject();
+            for (IntroData profile : profiles) {
+                writer.name(profile.getId());
+                profile.write(writer);
+            }
+            writer.endObject();
+        }
+        return out.toByteArray();
+    }
+}
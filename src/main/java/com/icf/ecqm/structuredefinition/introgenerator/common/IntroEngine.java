@@ -0,0 +1,39 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Turns one StructureDefinition into its generated intro block.
+ * <p>
+ * Implementations are configured once through their constructor and keep no mutable state between calls:
+ * everything a call needs lives on its own stack, so a single instance can be shared by any number of threads
+ * and retains nothing after a call returns, however many profiles it has seen.
+ */
+public interface IntroEngine {
+
+    /**
+     * Identifies the engine and the rule options it was built with (results generated under one key are never reused
+     * under another, ie by the incremental cache). Change it whenever the rules change what an intro contains.
+     */
+    String getRuleKey();
+
+    /**
+     * @return the intro markup, or an empty string when no element passes the criteria
+     */
+    String buildStructureDefinitionIntro(StructureDefinitionRecord structureDefinition);
+
+    /**
+     * Same as {@link #buildStructureDefinitionIntro(StructureDefinitionRecord)} for an already parsed StructureDefinition.
+     */
+    default String buildStructureDefinitionIntro(JsonObject root) {
+        return buildStructureDefinitionIntro(StructureDefinitionRecord.fromJson(root));
+    }
+
+    /**
+     * Same as {@link #buildStructureDefinitionIntro(StructureDefinitionRecord)} for raw StructureDefinition JSON.
+     */
+    default String buildStructureDefinitionIntro(String jsonString) {
+        return buildStructureDefinitionIntro(JsonParser.parseString(jsonString).getAsJsonObject());
+    }
+}
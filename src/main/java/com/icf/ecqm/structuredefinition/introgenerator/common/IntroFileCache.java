@@ -0,0 +1,58 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of the intro files (input/intro-notes, input/pagecontent) so repeated runs in watch mode don't re-read
+ * them. An entry is only trusted while the file's size and modification time still match, so edits made by hand
+ * between iterations are picked up rather than overwritten.
+ */
+public class IntroFileCache {
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private static class Entry {
+        private final byte[] bytes;
+        private final long lastModified;
+        private final long length;
+
+        private Entry(byte[] bytes, long lastModified, long length) {
+            this.bytes = bytes;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+
+    /**
+     * @return the file's current bytes, or null if it doesn't exist
+     */
+    public byte[] read(File file) throws IOException {
+        String key = file.getAbsolutePath();
+        Entry entry = entries.get(key);
+        if (entry != null && file.lastModified() == entry.lastModified && file.length() == entry.length) {
+            return entry.bytes;
+        }
+
+        byte[] bytes = IntroFileWriter.readExisting(file);
+        if (bytes == null) {
+            entries.remove(key);
+        } else {
+            entries.put(key, new Entry(bytes, file.lastModified(), bytes.length));
+        }
+        return bytes;
+    }
+
+    /**
+     * Same as {@link IntroFileWriter#writeIfChanged(File, byte[], String)}, keeping the cached copy current.
+     */
+    public boolean writeIfChanged(File file, byte[] existingBytes, String content) throws IOException {
+        boolean written = IntroFileWriter.writeIfChanged(file, existingBytes, content);
+        if (written) {
+            byte[] bytes = content.getBytes(IntroFileWriter.CHARSET);
+            entries.put(file.getAbsolutePath(), new Entry(bytes, file.lastModified(), bytes.length));
+        }
+        return written;
+    }
+}
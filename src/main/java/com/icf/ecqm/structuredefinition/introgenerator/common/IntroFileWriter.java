@@ -0,0 +1,101 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Writes generated files only when their bytes actually change, and then atomically.
+ * <p>
+ * Leaving identical files alone keeps their mtimes, so the IG Publisher/Jekyll doesn't re-render pages that didn't
+ * change. Real changes go to a temp file in the same directory which is then moved over the target, so a killed run
+ * leaves either the old or the new file, never a truncated one.
+ */
+public class IntroFileWriter {
+
+    /**
+     * Charset intro files are read and written with, independent of the platform default (which corrupted non-ASCII
+     * short descriptions on Windows).
+     */
+    public static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    private IntroFileWriter() {
+    }
+
+    /**
+     * @return the file's current bytes, or null if it doesn't exist
+     */
+    public static byte[] readExisting(File file) throws IOException {
+        try {
+            return Files.readAllBytes(file.toPath());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the file was written, false if it already held exactly this content
+     */
+    public static boolean writeIfChanged(File file, String content) throws IOException {
+        return writeIfChanged(file, readExisting(file), content);
+    }
+
+    /**
+     * @param existingBytes the file's current content as returned by {@link #readExisting(File)}
+     * @return true if the file was written, false if it already held exactly this content
+     */
+    public static boolean writeIfChanged(File file, byte[] existingBytes, String content) throws IOException {
+        return writeIfChanged(file, existingBytes, content.getBytes(CHARSET));
+    }
+
+    /**
+     * For files with their own encoding (ie UTF-8 JSON) rather than {@link #CHARSET}.
+     *
+     * @return true if the file was written, false if it already held exactly these bytes
+     */
+    public static boolean writeIfChanged(File file, byte[] existingBytes, byte[] newBytes) throws IOException {
+        if (existingBytes != null && Arrays.equals(existingBytes, newBytes)) {
+            return false;
+        }
+        writeAtomically(file.toPath(), newBytes);
+        return true;
+    }
+
+    private static void writeAtomically(Path target, byte[] bytes) throws IOException {
+        // not Files.createTempFile: that creates owner-only files, intro files should keep normal permissions
+        Path temp = target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            write(temp, bytes);
+            if (Files.exists(target) && Files.getFileStore(temp).supportsFileAttributeView(PosixFileAttributeView.class)) {
+                Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * One channel write for the whole content (Files.write hands it over in 8K chunks); the JDK copies it through its
+     * per-thread direct buffer, which grows to the largest file written.
+     */
+    private static void write(Path path, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
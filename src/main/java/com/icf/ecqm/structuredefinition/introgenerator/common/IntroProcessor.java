@@ -0,0 +1,21 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.io.File;
+
+/**
+ * An {@link IntroEngine} that can also run over an IG: read its output folder and inject the intros into its intro
+ * files. Like the engine itself, implementations keep no state between runs.
+ */
+public interface IntroProcessor extends IntroEngine {
+
+    /**
+     * Processes every StructureDefinition in the IG at {@link RunOptions#getRoot()}.
+     */
+    RunSummary runMain(RunOptions options);
+
+    /**
+     * Regenerates only the given StructureDefinition files and re-injects their intros. The combined list page needs
+     * every profile, so it's left for the next full run.
+     */
+    RunSummary runFiles(RunOptions options, File[] outputFiles);
+}
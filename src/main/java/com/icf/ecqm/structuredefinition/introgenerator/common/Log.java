@@ -0,0 +1,189 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Console output for the tool. Messages are handed to a background writer that prints them in batches, so profile
+ * processing never waits on a slow terminal or CI log collector; {@link #flush()} waits until everything logged so far
+ * is printed (done before prompts, reports on stdout and at exit).
+ * <p>
+ * Levels: {@link Level#QUIET} prints errors and warnings only, {@link Level#INFO} (the default) adds the run summary
+ * and what was changed, {@link Level#DEBUG} adds per-profile progress and the generated intros.
+ */
+public final class Log {
+
+    public enum Level {
+        QUIET, INFO, DEBUG;
+
+        /**
+         * @param value quiet, info or debug (case insensitive)
+         */
+        public static Level fromString(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown log level '" + value + "', expected quiet, info or debug");
+            }
+        }
+    }
+
+    private static final int QUEUE_CAPACITY = 8192;
+
+    private static class Entry {
+        private final boolean error;
+        private final String text;
+
+        private Entry(boolean error, String text) {
+            this.error = error;
+            this.text = text;
+        }
+    }
+
+    private static volatile Level level = Level.INFO;
+
+    //bounded, so a burst of logging slows the producers down instead of growing without limit
+    private static final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private static final Object progress = new Object();
+    private static long enqueued;
+    private static long written;
+    private static Thread writer;
+
+    private Log() {
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static void setLevel(Level level) {
+        Log.level = level;
+    }
+
+    public static boolean isInfoEnabled() {
+        return level.compareTo(Level.INFO) >= 0;
+    }
+
+    /**
+     * Check before building expensive debug messages.
+     */
+    public static boolean isDebugEnabled() {
+        return level == Level.DEBUG;
+    }
+
+    public static void debug(String message) {
+        if (isDebugEnabled()) {
+            enqueue(false, message);
+        }
+    }
+
+    public static void info(String message) {
+        if (isInfoEnabled()) {
+            enqueue(false, message);
+        }
+    }
+
+    /**
+     * Printed at every level, on stdout.
+     */
+    public static void warn(String message) {
+        enqueue(false, message);
+    }
+
+    /**
+     * Printed at every level, on stderr.
+     */
+    public static void error(String message) {
+        enqueue(true, message);
+    }
+
+    public static void error(String message, Throwable e) {
+        StringWriter stackTrace = new StringWriter();
+        e.printStackTrace(new PrintWriter(stackTrace));
+        enqueue(true, message + System.lineSeparator() + stackTrace.toString().trim());
+    }
+
+    /**
+     * Blocks until every message logged before this call has been printed.
+     */
+    public static void flush() {
+        synchronized (progress) {
+            long target = enqueued;
+            while (written < target) {
+                try {
+                    progress.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void enqueue(boolean error, String text) {
+        synchronized (progress) {
+            if (writer == null) {
+                startWriter();
+            }
+            enqueued++;
+        }
+        try {
+            queue.put(new Entry(error, text));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            //still counted above, so print it here rather than leave flush() waiting for it
+            print(List.of(new Entry(error, text)));
+        }
+    }
+
+    private static void startWriter() {
+        writer = new Thread(Log::drain, "intro-generator-log");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "intro-generator-log-flush"));
+    }
+
+    private static void drain() {
+        List<Entry> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch);
+            print(batch);
+            batch.clear();
+        }
+    }
+
+    private static void print(List<Entry> batch) {
+        //System.out/err are looked up per batch so redirection (tests, harnesses) is honoured
+        StringBuilder out = new StringBuilder();
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        for (Entry entry : batch) {
+            if (entry.error) {
+                stdout.print(out);
+                out.setLength(0);
+                stdout.flush();
+                stderr.println(entry.text);
+            } else {
+                out.append(entry.text).append(System.lineSeparator());
+            }
+        }
+        stdout.print(out);
+        stdout.flush();
+        stderr.flush();
+        synchronized (progress) {
+            written += batch.size();
+            progress.notifyAll();
+        }
+    }
+}
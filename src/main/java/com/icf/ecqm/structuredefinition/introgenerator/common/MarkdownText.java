@@ -0,0 +1,25 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+/**
+ * Escaping for element names and short descriptions written into the Markdown pages and intros.
+ * <p>
+ * Only '|' is escaped, as the pages always have; everything else (including '&lt;', as in Quantity.comparator's
+ * "&lt; | &lt;= | &gt;= | &gt;", and line breaks) is written as typed so existing pages keep their bytes.
+ */
+public final class MarkdownText {
+
+    private MarkdownText() {
+    }
+
+    /**
+     * Appends the text with '|' escaped as "\|".
+     */
+    public static StringBuilder appendEscaped(StringBuilder out, String text) {
+        int start = 0;
+        for (int i = text.indexOf('|'); i != -1; i = text.indexOf('|', start)) {
+            out.append(text, start, i).append("\\|");
+            start = i + 1;
+        }
+        return out.append(text, start, text.length());
+    }
+}
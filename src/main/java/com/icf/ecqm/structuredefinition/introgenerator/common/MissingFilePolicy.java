@@ -0,0 +1,81 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Collection;
+
+/**
+ * What to do when generated intros have no matching intro file in the IG.
+ */
+public enum MissingFilePolicy {
+    /**
+     * Ask on stdin (the default, for interactive use). Treated as {@link #SKIP} when stdin has no more input.
+     */
+    ASK,
+    CREATE,
+    SKIP,
+    /**
+     * Don't create them and end the run with a non-zero exit code.
+     */
+    FAIL;
+
+    public static MissingFilePolicy fromString(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown missing file policy '" + value + "', expected ask, create, skip or fail");
+        }
+    }
+
+    /**
+     * @param ask the question printed when the policy is {@link #ASK}
+     * @return true if the missing files should be created
+     */
+    public boolean shouldCreate(Collection<String> missingFileNames, String ask) {
+        switch (this) {
+            case CREATE:
+            case SKIP:
+            case FAIL:
+                Log.warn("\nSome intro files were missing: " + String.join(", ", missingFileNames)
+                        + " (--missing=" + name().toLowerCase() + ")");
+                return this == CREATE;
+            default:
+                return ask(ask);
+        }
+    }
+
+    /**
+     * Asks on stdin. The reader is shared by every prompt of the process and never closed, so each root of a batch
+     * run can still ask after an earlier one did; prompts of roots running at the same time take turns.
+     */
+    private static boolean ask(String ask) {
+        synchronized (Stdin.class) {
+            //the question has to come after everything already logged
+            Log.flush();
+            System.out.println(ask);
+
+            try {
+                String response = Stdin.READER.readLine();
+                while (response != null && !response.trim().equalsIgnoreCase("y") && !response.trim().equalsIgnoreCase("n")) {
+                    System.out.print(ask);
+                    response = Stdin.READER.readLine();
+                }
+                if (response != null) {
+                    return response.trim().equalsIgnoreCase("y");
+                }
+            } catch (IOException e) {
+                Log.warn("Could not read stdin: " + e.getMessage());
+            }
+            Log.warn("No answer on stdin, not creating missing files (use --missing=create|skip|fail when running unattended).");
+            return false;
+        }
+    }
+
+    /**
+     * Created on the first question, so runs that never ask don't touch stdin.
+     */
+    private static final class Stdin {
+        private static final BufferedReader READER = new BufferedReader(new InputStreamReader(System.in));
+    }
+}
@@ -0,0 +1,26 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.util.Locale;
+
+/**
+ * Where a run puts the generated intros.
+ */
+public enum OutputMode {
+    /**
+     * Inject each intro into its intro file and write the aggregate list page (the default).
+     */
+    PAGES,
+    /**
+     * Write the classified elements of every profile to one {@link IntroDataFile} for the IG templates to render,
+     * leaving intro files and the list page alone.
+     */
+    DATA;
+
+    public static OutputMode fromString(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown output mode '" + value + "', expected pages or data");
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches one directory (the IG's output folder) and reports which matching files changed.
+ * <p>
+ * The IG Publisher writes hundreds of files in bursts, so events are collected until the directory has been quiet for
+ * the debounce period and then reported as one batch. A file is reported as changed if it exists at the end of the
+ * burst and as deleted if it doesn't, whatever sequence of events led there. If the directory is deleted (ie by a
+ * clean publish) the watcher waits for it to come back and then reports everything in it as changed.
+ */
+public class OutputWatcher implements Closeable {
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 500;
+
+    private final Path directory;
+    private final FilenameFilter filter;
+    private final long debounceMillis;
+    private final WatchService watchService;
+
+    public interface ChangeListener {
+        void onChange(Set<File> changedFiles, Set<File> deletedFiles) throws Exception;
+    }
+
+    public OutputWatcher(File directory, FilenameFilter filter, long debounceMillis) throws IOException {
+        this.directory = directory.toPath();
+        this.filter = filter;
+        this.debounceMillis = debounceMillis;
+        this.watchService = this.directory.getFileSystem().newWatchService();
+        //registered up front so changes made before watch() is called are still reported
+        register();
+    }
+
+    /**
+     * Blocks, calling the listener once per burst of changes, until {@link #close()} is called or the thread is interrupted.
+     * Exceptions thrown by the listener are reported and watching continues.
+     */
+    public void watch(ChangeListener listener) throws IOException, InterruptedException {
+        try {
+            while (true) {
+                Set<String> touched = new LinkedHashSet<>();
+                WatchKey key = watchService.take();
+                while (key != null) {
+                    if (!collect(key, touched)) {
+                        awaitDirectory();
+                        touched.addAll(listMatchingNames());
+                    }
+                    key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                }
+
+                Set<File> changedFiles = new LinkedHashSet<>();
+                Set<File> deletedFiles = new LinkedHashSet<>();
+                for (String name : touched) {
+                    File file = directory.resolve(name).toFile();
+                    (file.isFile() ? changedFiles : deletedFiles).add(file);
+                }
+                if (changedFiles.isEmpty() && deletedFiles.isEmpty()) {
+                    continue;
+                }
+                try {
+                    listener.onChange(changedFiles, deletedFiles);
+                } catch (Exception e) {
+                    Log.error("Error regenerating intros: " + e.getMessage(), e);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            //closed, stop watching
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void register() throws IOException {
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    /**
+     * Adds the names of matching files in the key's events to touched.
+     *
+     * @return false if the key is no longer valid (the directory is gone)
+     */
+    private boolean collect(WatchKey key, Set<String> touched) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                touched.addAll(listMatchingNames());
+                continue;
+            }
+            String name = ((Path) event.context()).getFileName().toString();
+            if (filter.accept(directory.toFile(), name)) {
+                touched.add(name);
+            }
+        }
+        return key.reset();
+    }
+
+    private void awaitDirectory() throws IOException, InterruptedException {
+        while (true) {
+            try {
+                register();
+                return;
+            } catch (NoSuchFileException e) {
+                Thread.sleep(debounceMillis);
+            }
+        }
+    }
+
+    private List<String> listMatchingNames() {
+        String[] names = directory.toFile().list(filter);
+        return names == null ? Collections.emptyList() : Arrays.asList(names);
+    }
+}
@@ -0,0 +1,34 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.util.concurrent.Future;
+
+/**
+ * A profile handed to the workers: the name of its StructureDefinition file (or archive entry), where it was read
+ * from, and the result to come.
+ */
+public final class PendingProfile<T> {
+    private final String name;
+    private final String path;
+    private final Future<T> result;
+
+    public PendingProfile(String name, String path, Future<T> result) {
+        this.name = name;
+        this.path = path;
+        this.result = result;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The file's absolute path, or archive!/entry.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public Future<T> getResult() {
+        return result;
+    }
+}
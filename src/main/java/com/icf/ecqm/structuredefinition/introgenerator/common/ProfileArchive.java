@@ -0,0 +1,104 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * StructureDefinitions read straight out of the publisher's definitions.json.zip or a FHIR package.tgz
+ * (--input definitions|package), so a run opens one archive instead of one file per profile and nothing is extracted
+ * to disk.
+ * <p>
+ * The archive is read sequentially, by {@link ProfileReader}'s reader thread. Each StructureDefinition entry
+ * (StructureDefinition*.json at the top of the zip, or directly in the package's package/ folder) is buffered on its own
+ * and handed to the workers. At most two entries per worker are in memory at once, and no entry may be larger than
+ * {@link #MAX_ENTRY_BYTES}.
+ */
+public final class ProfileArchive {
+    static final long MAX_ENTRY_BYTES = 256L * 1024 * 1024;
+    private static final String PACKAGE_FOLDER = "package/";
+
+    /**
+     * Builds a result from a StructureDefinition's content.
+     */
+    public interface EntryTask<T> {
+        T process(String name, byte[] json) throws Exception;
+    }
+
+    private ProfileArchive() {
+    }
+
+    /**
+     * Reads the StructureDefinition entries one after the other and hands the sink the task for each; an entry that
+     * can't be read is handed over as its failure instead.
+     */
+    static <T> void forEachProfile(File archive, RunMetrics metrics, EntryTask<T> task, ProfileReader.Sink<T> sink) throws IOException {
+        forEachEntry(archive, (path, size, in) -> {
+            String name = path.substring(path.lastIndexOf('/') + 1);
+            if (!(path.equals(name) || path.equals(PACKAGE_FOLDER + name)) || !ProfileDiscovery.isStructureDefinitionName(name)) {
+                return;
+            }
+            String displayPath = archive.getPath() + "!/" + path;
+            RunMetrics.Span read = metrics.start(RunMetrics.READ);
+            byte[] json;
+            try {
+                json = readEntry(in, size);
+            } catch (IOException e) {
+                sink.accept(name, displayPath, () -> {
+                    throw e;
+                });
+                return;
+            }
+            read.stop(json.length);
+            sink.accept(name, displayPath, () -> task.process(name, json));
+        });
+    }
+
+    private static void forEachEntry(File archive, TarReader.EntryVisitor visitor) throws IOException {
+        String fileName = archive.getName().toLowerCase();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(archive.toPath()), 64 * 1024)) {
+            if (fileName.endsWith(".tgz") || fileName.endsWith(".tar.gz")) {
+                TarReader.forEachFile(new GZIPInputStream(in, 64 * 1024), visitor);
+            } else {
+                ZipInputStream zip = new ZipInputStream(in);
+                for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                    if (!entry.isDirectory()) {
+                        visitor.visit(entry.getName(), entry.getSize(), zip);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param size the entry's size if the archive records it, else -1
+     */
+    static byte[] readEntry(InputStream in, long size) throws IOException {
+        if (size > MAX_ENTRY_BYTES) {
+            throw new IOException("Archive entry of " + size + " bytes is larger than " + MAX_ENTRY_BYTES);
+        }
+        if (size >= 0) {
+            byte[] bytes = in.readNBytes((int) size);
+            if (bytes.length != size) {
+                throw new IOException("Truncated archive entry");
+            }
+            return bytes;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (out.size() + read > MAX_ENTRY_BYTES) {
+                throw new IOException("Archive entry is larger than " + MAX_ENTRY_BYTES + " bytes");
+            }
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
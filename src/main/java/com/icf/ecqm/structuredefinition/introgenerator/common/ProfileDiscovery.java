@@ -0,0 +1,148 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the StructureDefinition JSON files of an IG's output folder.
+ * <p>
+ * The publisher's output folder holds tens of thousands of HTML, JSON, XML, TTL and image files, so listing it costs
+ * more than processing the profiles on network filesystems. With {@link DiscoveryMode#INDEX} the StructureDefinitions
+ * are selected by resourceType from the FHIR package manifest (output/.index.json, or output/package/.index.json)
+ * instead; only when there is no readable manifest is the folder listed.
+ */
+public final class ProfileDiscovery {
+    public static final String INDEX_FILE = ".index.json";
+    private static final String PACKAGE_FOLDER = "package";
+    private static final String STRUCTURE_DEFINITION = "StructureDefinition";
+    private static final String JSON = ".json";
+
+    private ProfileDiscovery() {
+    }
+
+    /**
+     * @return the StructureDefinition files, in manifest (or directory) order; empty if the folder doesn't exist
+     */
+    public static File[] discover(File outputDir, DiscoveryMode mode) {
+        long startNanos = System.nanoTime();
+        File[] files = null;
+        String source = "listing";
+        if (mode == DiscoveryMode.INDEX) {
+            for (File index : new File[]{new File(outputDir, INDEX_FILE), new File(new File(outputDir, PACKAGE_FOLDER), INDEX_FILE)}) {
+                if (!index.isFile()) {
+                    continue;
+                }
+                try {
+                    files = fromIndex(outputDir, index);
+                    source = index.getPath();
+                    break;
+                } catch (IOException | RuntimeException e) {
+                    Log.warn("Could not read " + index.getPath() + " (" + e.getMessage() + "), listing " + outputDir.getPath() + " instead");
+                }
+            }
+        }
+        if (files == null) {
+            files = list(outputDir);
+        }
+        if (Log.isDebugEnabled()) {
+            Log.debug("Found " + files.length + " StructureDefinitions from " + source + " in "
+                    + (System.nanoTime() - startNanos) / 1_000_000 + " ms");
+        }
+        return files;
+    }
+
+    /**
+     * The manifest's StructureDefinition entries, each resolved against the output folder (or else the manifest's
+     * own folder). Entries whose file is gone are left out.
+     */
+    static File[] fromIndex(File outputDir, File index) throws IOException {
+        File indexDir = index.getParentFile();
+        List<File> files = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new Utf8FileReader(index))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("files")) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    String filename = null;
+                    String resourceType = null;
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "filename":
+                                filename = reader.nextString();
+                                break;
+                            case "resourceType":
+                                resourceType = reader.nextString();
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    //plain file names only, the manifest can't point outside its folder
+                    if (STRUCTURE_DEFINITION.equals(resourceType) && filename != null
+                            && filename.indexOf('/') == -1 && filename.indexOf('\\') == -1) {
+                        File file = resolve(outputDir, indexDir, filename);
+                        if (file != null) {
+                            files.add(file);
+                        } else {
+                            Log.debug("Skipping " + filename + " from " + index.getPath() + ": file not found");
+                        }
+                    }
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        }
+        return files.toArray(new File[0]);
+    }
+
+    private static File resolve(File outputDir, File indexDir, String filename) {
+        File file = new File(outputDir, filename);
+        if (file.isFile()) {
+            return file;
+        }
+        file = new File(indexDir, filename);
+        return file.isFile() ? file : null;
+    }
+
+    /**
+     * StructureDefinition*.json, matched case-insensitively (as the folder always was) without lowercasing every name.
+     */
+    static File[] list(File outputDir) {
+        List<File> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(outputDir.toPath(), ProfileDiscovery::isStructureDefinitionFile)) {
+            for (Path path : stream) {
+                files.add(path.toFile());
+            }
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            return new File[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return files.toArray(new File[0]);
+    }
+
+    private static boolean isStructureDefinitionFile(Path path) {
+        return isStructureDefinitionName(path.getFileName().toString());
+    }
+
+    static boolean isStructureDefinitionName(String name) {
+        return name.regionMatches(true, 0, STRUCTURE_DEFINITION, 0, STRUCTURE_DEFINITION.length())
+                && name.regionMatches(true, name.length() - JSON.length(), JSON, 0, JSON.length());
+    }
+}
@@ -0,0 +1,260 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * The read and parse stages of a run. A reader thread goes through the StructureDefinitions one after the other (the
+ * output folder's files, or the entries of an archive) and hands each to the parse workers as soon as it is read, so the
+ * disk is busy while the workers parse and while the caller writes the intros of profiles already done. {@link #next()}
+ * returns the profiles to the caller in input order.
+ * <p>
+ * Only the tree engine's files and archive entries are read ahead into memory. The streaming engine's files go to the
+ * workers as they are, and each worker reads its file while it parses it, so no profile is ever held whole.
+ * <p>
+ * Both hand-offs are bounded: at most {@link #IN_FLIGHT_PER_THREAD} profiles per worker are handed over and not yet
+ * parsed, and at most {@link #QUEUED_PER_THREAD} per worker wait for the caller, so a slow disk or a slow caller holds
+ * the reader back instead of filling the heap. With one thread and no shared executor nothing runs in the background:
+ * {@link #next()} reads and parses each file on the calling thread.
+ */
+public final class ProfileReader<T> implements AutoCloseable {
+    static final int IN_FLIGHT_PER_THREAD = 2;
+    static final int QUEUED_PER_THREAD = 4;
+
+    private static final PendingProfile<?> END = new PendingProfile<>(null, null, null);
+
+    /**
+     * Where the profiles come from; hands each one to the sink in input order, on the reader thread.
+     */
+    interface Source<T> {
+        void forEach(Sink<T> sink) throws IOException;
+    }
+
+    interface Sink<T> {
+        /**
+         * @param work parses the profile, on a worker; for a profile that couldn't be read it throws why instead
+         */
+        void accept(String name, String path, Callable<T> work) throws IOException;
+    }
+
+    private final BlockingQueue<PendingProfile<T>> queue;
+    private final Iterator<PendingProfile<T>> inline;
+    private Thread readerThread;
+    private volatile IOException failure;
+    private volatile boolean closed;
+    private boolean done;
+
+    private ProfileReader(BlockingQueue<PendingProfile<T>> queue, Iterator<PendingProfile<T>> inline) {
+        this.queue = queue;
+        this.inline = inline;
+    }
+
+    /**
+     * Reads the given files ahead of the workers and hands the task each one's content (for the tree engine, which
+     * holds a whole profile in memory anyway).
+     */
+    public static <T> ProfileReader<T> start(File[] files, RunOptions options, RunMetrics metrics, ProfileArchive.EntryTask<T> task) {
+        return startFiles(files, options, file -> {
+            byte[] json;
+            try {
+                json = readFile(file, metrics);
+            } catch (IOException e) {
+                return () -> {
+                    throw e;
+                };
+            }
+            return () -> task.process(file.getName(), json);
+        });
+    }
+
+    /**
+     * Hands the given files to the task unread, for tasks that read the file while they parse it (the streaming
+     * engine).
+     */
+    public static <T> ProfileReader<T> start(File[] files, RunOptions options, ProfileTaskRunner.ProfileTask<T> task) {
+        return startFiles(files, options, file -> () -> task.process(file));
+    }
+
+    private static <T> ProfileReader<T> startFiles(File[] files, RunOptions options, Function<File, Callable<T>> work) {
+        if (isInline(options)) {
+            //lazily, so each file is read and parsed only when the caller gets to it
+            Iterator<PendingProfile<T>> profiles = new Iterator<>() {
+                private int index = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return index < files.length;
+                }
+
+                @Override
+                public PendingProfile<T> next() {
+                    File file = files[index++];
+                    return new PendingProfile<>(file.getName(), file.getAbsolutePath(), run(work.apply(file)));
+                }
+            };
+            return new ProfileReader<>(null, profiles);
+        }
+        return startThread(sink -> {
+            for (File file : files) {
+                sink.accept(file.getName(), file.getAbsolutePath(), work.apply(file));
+            }
+        }, options);
+    }
+
+    /**
+     * Reads the StructureDefinition entries of a definitions.json.zip or package.tgz ({@link ProfileArchive}). If the
+     * archive itself can't be read, {@link #next()} throws once the entries read before are taken.
+     */
+    public static <T> ProfileReader<T> start(File archive, RunOptions options, RunMetrics metrics, ProfileArchive.EntryTask<T> task) {
+        Source<T> source = sink -> ProfileArchive.forEachProfile(archive, metrics, task, sink);
+        if (isInline(options)) {
+            //an archive can only be read front to back in one go, so it is read (and parsed) up front
+            List<PendingProfile<T>> profiles = new ArrayList<>();
+            IOException failure = null;
+            try {
+                source.forEach((name, path, work) -> profiles.add(new PendingProfile<>(name, path, run(work))));
+            } catch (IOException e) {
+                failure = e;
+            }
+            ProfileReader<T> reader = new ProfileReader<>(null, profiles.iterator());
+            reader.failure = failure;
+            return reader;
+        }
+        return startThread(source, options);
+    }
+
+    private static boolean isInline(RunOptions options) {
+        return options.getExecutor() == null && options.getThreads() <= 1;
+    }
+
+    private static <T> FutureTask<T> run(Callable<T> work) {
+        FutureTask<T> future = new FutureTask<>(work);
+        future.run();
+        return future;
+    }
+
+    private static byte[] readFile(File file, RunMetrics metrics) throws IOException {
+        RunMetrics.Span read = metrics.start(RunMetrics.READ);
+        byte[] json = Files.readAllBytes(file.toPath());
+        read.stop(json.length);
+        return json;
+    }
+
+    private static <T> ProfileReader<T> startThread(Source<T> source, RunOptions options) {
+        int threads = Math.max(1, options.getThreads());
+        ProfileReader<T> reader = new ProfileReader<>(new ArrayBlockingQueue<>(threads * QUEUED_PER_THREAD), null);
+        reader.readerThread = new Thread(() -> reader.read(source, options, threads), "profile-reader");
+        reader.readerThread.setDaemon(true);
+        reader.readerThread.start();
+        return reader;
+    }
+
+    /**
+     * Runs on the reader thread.
+     */
+    @SuppressWarnings("unchecked")
+    private void read(Source<T> source, RunOptions options, int threads) {
+        ExecutorService executor = options.getExecutor();
+        boolean ownPool = executor == null;
+        if (ownPool) {
+            executor = Executors.newFixedThreadPool(threads);
+        }
+        ExecutorService workers = executor;
+        Semaphore inFlight = new Semaphore(threads * IN_FLIGHT_PER_THREAD);
+        try {
+            source.forEach((name, path, work) -> {
+                try {
+                    inFlight.acquire();
+                    Future<T> result;
+                    try {
+                        result = workers.submit(() -> {
+                            try {
+                                return work.call();
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        inFlight.release();
+                        throw new IOException("Could not start parsing " + name, e);
+                    }
+                    queue.put(new PendingProfile<>(name, path, result));
+                } catch (InterruptedException e) {
+                    //closed by the caller
+                    throw new InterruptedIOException();
+                }
+            });
+        } catch (InterruptedIOException e) {
+            return;
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException | Error e) {
+            //ie out of memory: still ends the queue, or the caller would wait for the next profile forever
+            failure = new IOException("Reading the StructureDefinitions failed", e);
+        } finally {
+            if (ownPool) {
+                //already submitted tasks still run to completion:
+                executor.shutdown();
+            }
+        }
+        try {
+            if (!closed) {
+                queue.put((PendingProfile<T>) END);
+            }
+        } catch (InterruptedException e) {
+            //closed by the caller
+        }
+    }
+
+    /**
+     * Waits for the next profile.
+     *
+     * @return the next profile in input order (its result may still be in progress), or null when all were returned
+     * @throws IOException if the archive could not be read (after the profiles read before that were returned)
+     */
+    public PendingProfile<T> next() throws IOException {
+        if (done) {
+            return null;
+        }
+        PendingProfile<T> profile;
+        if (inline != null) {
+            profile = inline.hasNext() ? inline.next() : null;
+        } else {
+            try {
+                profile = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the next profile");
+            }
+            if (profile == END) {
+                profile = null;
+            }
+        }
+        if (profile == null) {
+            done = true;
+            if (failure != null) {
+                throw failure;
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * Stops reading if the caller leaves before taking every profile. Profiles already handed to the workers still
+     * finish in the background.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (readerThread != null) {
+            readerThread.interrupt();
+        }
+    }
+}
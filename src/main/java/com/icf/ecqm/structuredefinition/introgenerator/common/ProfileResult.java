@@ -0,0 +1,46 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+/**
+ * Outcome of processing one StructureDefinition, produced on a worker thread and merged into the run's maps afterwards
+ * (so it holds no references to shared state):
+ * <ul>
+ * <li>the intro file it belongs to and the generated intro, empty when no element passed the criteria</li>
+ * <li>its key and entry on the aggregate page, the entry empty when it isn't listed there</li>
+ * <li>the classified elements for the {@link IntroDataFile}</li>
+ * </ul>
+ */
+public class ProfileResult {
+    private final String introFileName;
+    private final String mdKey;
+    private final String intro;
+    private final String mdEntry;
+    private final IntroData data;
+
+    public ProfileResult(String introFileName, String mdKey, String intro, String mdEntry, IntroData data) {
+        this.introFileName = introFileName;
+        this.mdKey = mdKey;
+        this.intro = intro;
+        this.mdEntry = mdEntry;
+        this.data = data;
+    }
+
+    public String getIntroFileName() {
+        return introFileName;
+    }
+
+    public String getMdKey() {
+        return mdKey;
+    }
+
+    public String getIntro() {
+        return intro;
+    }
+
+    public String getMdEntry() {
+        return mdEntry;
+    }
+
+    public IntroData getData() {
+        return data;
+    }
+}
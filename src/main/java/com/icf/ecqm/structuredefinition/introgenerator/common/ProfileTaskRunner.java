@@ -0,0 +1,87 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Fans per-profile work out over a fixed thread pool. Futures are returned in the same order as the input files so
+ * callers can merge results (and print progress) exactly as a sequential run would, regardless of which worker
+ * finished first.
+ */
+public class ProfileTaskRunner {
+
+    public interface ProfileTask<T> {
+        T process(File file) throws Exception;
+    }
+
+    private ProfileTaskRunner() {
+    }
+
+    public static int defaultThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Runs on the options' shared executor when there is one (batch runs over several IG roots), otherwise on a pool
+     * of {@link RunOptions#getThreads()} workers created for this call.
+     */
+    public static <T> List<Future<T>> runAll(File[] files, RunOptions options, ProfileTask<T> task) {
+        return options.getExecutor() != null
+                ? runAll(files, options.getExecutor(), task)
+                : runAll(files, options.getThreads(), task);
+    }
+
+    /**
+     * Submits every task to an executor owned by the caller, which is left running.
+     */
+    public static <T> List<Future<T>> runAll(File[] files, ExecutorService executor, ProfileTask<T> task) {
+        List<Future<T>> futures = new ArrayList<>(files.length);
+        for (File file : files) {
+            futures.add(executor.submit(() -> task.process(file)));
+        }
+        return futures;
+    }
+
+    /**
+     * @param threads number of workers; 1 or less runs every task on the calling thread
+     */
+    public static <T> List<Future<T>> runAll(File[] files, int threads, ProfileTask<T> task) {
+        List<Future<T>> futures = new ArrayList<>(files.length);
+
+        if (threads <= 1 || files.length <= 1) {
+            for (File file : files) {
+                FutureTask<T> future = new FutureTask<>(() -> task.process(file));
+                future.run();
+                futures.add(future);
+            }
+            return futures;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, files.length));
+        try {
+            for (File file : files) {
+                futures.add(pool.submit(() -> task.process(file)));
+            }
+        } finally {
+            //already submitted tasks still run to completion:
+            pool.shutdown();
+        }
+        return futures;
+    }
+
+    /**
+     * Waits for a future, unwrapping the task's own exception.
+     */
+    public static <T> T await(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
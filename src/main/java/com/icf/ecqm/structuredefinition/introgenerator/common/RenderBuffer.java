@@ -0,0 +1,30 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+/**
+ * Per-thread scratch buffer for rendering intros and page entries, so a worker reuses one grown buffer for every
+ * profile instead of growing a new one each time. Callers copy the result out with toString() before rendering the
+ * next thing.
+ */
+public final class RenderBuffer {
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+    //a buffer grown past this by one huge profile isn't kept around for the rest of the run
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_CAPACITY));
+
+    private RenderBuffer() {
+    }
+
+    /**
+     * The calling thread's buffer, emptied.
+     */
+    public static StringBuilder acquire() {
+        StringBuilder buffer = BUFFER.get();
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            buffer = new StringBuilder(INITIAL_CAPACITY);
+            BUFFER.set(buffer);
+        }
+        buffer.setLength(0);
+        return buffer;
+    }
+}
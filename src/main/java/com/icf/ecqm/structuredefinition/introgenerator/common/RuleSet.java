@@ -0,0 +1,225 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The element lists of an intro ("mustHave", "qiElements", "mustSupport", ...) and the conditions an element has to
+ * meet to make each one, read from a JSON config and compiled once into an {@link ElementRule} per list:
+ * <pre>
+ * {
+ *   "name": "qicore",
+ *   "lists": [
+ *     {"name": "mustHave", "when": {"min": 1, "max": ["1", "*"], "mustSupport": true}},
+ *     {"name": "qiElements", "when": {"extension": "http://hl7.org/fhir/us/qicore/StructureDefinition/qicore-keyelement"}}
+ *   ]
+ * }
+ * </pre>
+ * All conditions of a list must hold: "min" (a number), "max" (a string or an array of accepted values), "mustSupport"
+ * (true or false, never met by an element that doesn't declare it) and "extension" (a url the element carries).
+ * Lists are tried in order and an element goes into the first one it makes. The qicore, qicore-ms and deqm rule sets
+ * are built in (src/main/resources/rules).
+ * <p>
+ * Immutable, so one rule set can be shared by every worker of a run.
+ */
+public final class RuleSet {
+    private static final String BUILT_IN_FOLDER = "rules/";
+
+    private final String name;
+    private final String key;
+    private final List<String> listNames;
+    private final ElementRule[] rules;
+
+    private RuleSet(String name, String key, List<String> listNames, ElementRule[] rules) {
+        this.name = name;
+        this.key = key;
+        this.listNames = listNames;
+        this.rules = rules;
+    }
+
+    /**
+     * @param name qicore, qicore-ms or deqm
+     */
+    public static RuleSet builtIn(String name) {
+        try (InputStream in = RuleSet.class.getClassLoader().getResourceAsStream(BUILT_IN_FOLDER + name + ".json")) {
+            if (in == null) {
+                throw new IllegalArgumentException("Unknown rule set '" + name + "', expected qicore, qicore-ms or deqm");
+            }
+            //built in rule sets keep the rule key the processors had before the rules were configurable
+            return parse(new InputStreamReader(in, StandardCharsets.UTF_8), name, "built in rule set " + name);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read built in rule set " + name, e);
+        }
+    }
+
+    /**
+     * Reads a rule set config, ie one passed with --rules.
+     */
+    public static RuleSet load(File file) throws IOException {
+        try (Reader reader = new Utf8FileReader(file)) {
+            return parse(reader, null, file.getPath());
+        }
+    }
+
+    /**
+     * @param key the rule key, or null to derive it from the config itself so any change to it is a new key
+     */
+    private static RuleSet parse(Reader reader, String key, String source) {
+        JsonObject config;
+        try {
+            config = JsonParser.parseReader(reader).getAsJsonObject();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IllegalArgumentException("Rule set " + source + " is not a JSON object", e);
+        }
+        String name = requireString(config, "name", source);
+        JsonElement lists = config.get("lists");
+        if (lists == null || !lists.isJsonArray() || lists.getAsJsonArray().size() == 0) {
+            throw new IllegalArgumentException("Rule set " + source + " has no lists");
+        }
+
+        List<String> listNames = new ArrayList<>();
+        List<ElementRule> rules = new ArrayList<>();
+        for (JsonElement list : lists.getAsJsonArray()) {
+            if (!list.isJsonObject()) {
+                throw new IllegalArgumentException("Rule set " + source + " has a list that is not an object");
+            }
+            String listName = requireString(list.getAsJsonObject(), "name", source);
+            if (listNames.contains(listName)) {
+                throw new IllegalArgumentException("Rule set " + source + " has list '" + listName + "' twice");
+            }
+            JsonElement when = list.getAsJsonObject().get("when");
+            if (when == null || !when.isJsonObject()) {
+                throw new IllegalArgumentException("List '" + listName + "' of rule set " + source + " has no \"when\" object");
+            }
+            listNames.add(listName);
+            rules.add(compile(when.getAsJsonObject(), listName, source));
+        }
+        if (listNames.size() > Integer.SIZE) {
+            throw new IllegalArgumentException("Rule set " + source + " has more than " + Integer.SIZE + " lists");
+        }
+        return new RuleSet(name, key != null ? key : "rules:" + config, Collections.unmodifiableList(listNames),
+                rules.toArray(new ElementRule[0]));
+    }
+
+    private static ElementRule compile(JsonObject when, String listName, String source) {
+        List<ElementRule> conditions = new ArrayList<>();
+        for (Map.Entry<String, JsonElement> condition : when.entrySet()) {
+            JsonElement value = condition.getValue();
+            try {
+                switch (condition.getKey()) {
+                    case "min":
+                        conditions.add(ElementRule.min(value.getAsInt()));
+                        break;
+                    case "max":
+                        Set<String> values = new HashSet<>();
+                        for (JsonElement max : value.isJsonArray() ? value.getAsJsonArray() : singleton(value)) {
+                            values.add(max.getAsString());
+                        }
+                        conditions.add(ElementRule.maxIn(values));
+                        break;
+                    case "mustSupport":
+                        if (!value.isJsonPrimitive() || !value.getAsJsonPrimitive().isBoolean()) {
+                            throw new IllegalArgumentException("Invalid value " + value + " for 'mustSupport' in list '"
+                                    + listName + "' of rule set " + source + ", expected true or false");
+                        }
+                        conditions.add(ElementRule.mustSupport(value.getAsBoolean()));
+                        break;
+                    case "extension":
+                        conditions.add(ElementRule.hasExtension(value.getAsString()));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown condition '" + condition.getKey() + "' in list '" + listName
+                                + "' of rule set " + source + ", expected min, max, mustSupport or extension");
+                }
+            } catch (UnsupportedOperationException | IllegalStateException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value " + value + " for '" + condition.getKey() + "' in list '"
+                        + listName + "' of rule set " + source, e);
+            }
+        }
+        return ElementRule.all(conditions);
+    }
+
+    private static JsonArray singleton(JsonElement value) {
+        JsonArray array = new JsonArray();
+        array.add(value);
+        return array;
+    }
+
+    private static String requireString(JsonObject object, String member, String source) {
+        JsonElement value = object.get(member);
+        if (value == null || !value.isJsonPrimitive() || value.getAsString().isEmpty()) {
+            throw new IllegalArgumentException("Rule set " + source + " is missing \"" + member + "\"");
+        }
+        return value.getAsString();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The {@link IntroEngine#getRuleKey() rule key} of engines classifying with this rule set.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public List<String> getListNames() {
+        return listNames;
+    }
+
+    /**
+     * Checks that the rule set has exactly the lists a processor renders, in any order.
+     *
+     * @return the index of each of the names in this rule set's lists
+     */
+    public int[] requireLists(String... names) {
+        if (listNames.size() != names.length || !listNames.containsAll(Arrays.asList(names))) {
+            throw new IllegalArgumentException("Rule set " + name + " has lists " + listNames + ", expected "
+                    + Arrays.toString(names));
+        }
+        int[] indexes = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            indexes[i] = listNames.indexOf(names[i]);
+        }
+        return indexes;
+    }
+
+    /**
+     * Tries the lists in order and records the first one the element makes on its node; a list is only tried when the
+     * node is {@link ElementIndex.Node#isEligibleFor(int) eligible} for it.
+     *
+     * @return the index of that list, or -1 if the element made none
+     */
+    public int classify(ElementRecord element, ElementIndex.Node node) {
+        for (int list = 0; list < rules.length; list++) {
+            if (node.isEligibleFor(list) && rules[list].matches(element)) {
+                node.addToList(list);
+                return list;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + listNames;
+    }
+}
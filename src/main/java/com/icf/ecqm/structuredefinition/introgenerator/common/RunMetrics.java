@@ -0,0 +1,307 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-phase and per-profile timings, byte counts and allocations for one run, reported as JSON (--metrics). Thread-safe:
+ * the per-profile phases are recorded on the worker threads.
+ * <p>
+ * Phases: discover (finding the StructureDefinitions, see {@link ProfileDiscovery}), list (intro folder listings), read
+ * (reading the StructureDefinitions, on {@link ProfileReader}'s reader thread), parse, classify and render (per profile,
+ * summed over all workers, so they can add up to more than the wall time), cache (incremental cache save), splice
+ * (reading, splicing and writing intro files) and page (rendering and writing the aggregate page). Bytes are the
+ * StructureDefinition size for read and parse and the size of what was produced (in characters) for render, splice and
+ * page. Allocation is measured per thread through the JVM's {@link ThreadMXBean} and reported as -1 where the JVM
+ * doesn't support it.
+ */
+public class RunMetrics {
+    public static final String DISCOVER = "discover";
+    public static final String LIST = "list";
+    public static final String READ = "read";
+    public static final String PARSE = "parse";
+    public static final String CLASSIFY = "classify";
+    public static final String RENDER = "render";
+    public static final String CACHE = "cache";
+    public static final String SPLICE = "splice";
+    public static final String PAGE = "page";
+
+    private static final String[] PHASES = {DISCOVER, LIST, READ, PARSE, CLASSIFY, RENDER, CACHE, SPLICE, PAGE};
+    private static final int TOP_PROFILES = 10;
+    private static final RunMetrics DISABLED = new RunMetrics(false);
+    private static final Span NO_SPAN = new Span(null, null);
+
+    private final boolean enabled;
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos = -1;
+    private final Map<String, PhaseTotals> phases = new ConcurrentHashMap<>();
+    private final List<ProfileMetrics> profiles = Collections.synchronizedList(new ArrayList<>());
+
+    private static class PhaseTotals {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong allocatedBytes = new AtomicLong();
+    }
+
+    /**
+     * One timed section of a phase, started and stopped on the same thread.
+     */
+    public static class Span {
+        private final RunMetrics metrics;
+        private final String phase;
+        private final long startNanos;
+        private final long startAllocated;
+        private long nanos;
+        private long allocatedBytes = -1;
+
+        private Span(RunMetrics metrics, String phase) {
+            this.metrics = metrics;
+            this.phase = phase;
+            this.startAllocated = metrics == null ? -1 : allocatedBytes();
+            this.startNanos = metrics == null ? 0 : System.nanoTime();
+        }
+
+        /**
+         * @param bytes bytes read or produced by this section, 0 if not applicable
+         * @return elapsed nanoseconds (0 when metrics are disabled)
+         */
+        public long stop(long bytes) {
+            if (metrics == null) {
+                return 0;
+            }
+            nanos = System.nanoTime() - startNanos;
+            if (startAllocated >= 0) {
+                allocatedBytes = allocatedBytes() - startAllocated;
+            }
+            metrics.add(phase, nanos, bytes, allocatedBytes);
+            return nanos;
+        }
+
+        /**
+         * Bytes this thread allocated between start and {@link #stop(long)}, -1 if unknown.
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+
+    private static class ProfileMetrics {
+        private final String fileName;
+        private final long bytes;
+        private final long parseNanos;
+        private final long classifyNanos;
+        private final long renderNanos;
+        private final long allocatedBytes;
+
+        private ProfileMetrics(String fileName, long bytes, long parseNanos, long classifyNanos, long renderNanos, long allocatedBytes) {
+            this.fileName = fileName;
+            this.bytes = bytes;
+            this.parseNanos = parseNanos;
+            this.classifyNanos = classifyNanos;
+            this.renderNanos = renderNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        private long getTotalNanos() {
+            return parseNanos + classifyNanos + renderNanos;
+        }
+
+        private JsonObject toJsonObject() {
+            JsonObject json = new JsonObject();
+            json.addProperty("file", fileName);
+            json.addProperty("bytes", bytes);
+            json.addProperty("totalMillis", millis(getTotalNanos()));
+            json.addProperty("parseMillis", millis(parseNanos));
+            json.addProperty("classifyMillis", millis(classifyNanos));
+            json.addProperty("renderMillis", millis(renderNanos));
+            json.addProperty("allocatedBytes", allocatedBytes);
+            return json;
+        }
+    }
+
+    public RunMetrics() {
+        this(true);
+    }
+
+    private RunMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Metrics that record nothing, for runs without a metrics report.
+     */
+    public static RunMetrics disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * New metrics when the options ask for a report, otherwise {@link #disabled()}.
+     */
+    public static RunMetrics forOptions(RunOptions options) {
+        return options.getMetricsFile() != null ? new RunMetrics() : DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Span start(String phase) {
+        return enabled ? new Span(this, phase) : NO_SPAN;
+    }
+
+    /**
+     * Records one profile from its stopped spans (already added to the phase totals when they stopped). Processors
+     * that classify and render in one step pass a single classify span for both.
+     */
+    public void recordProfile(String fileName, long bytes, Span... spans) {
+        if (!enabled) {
+            return;
+        }
+        long parseNanos = 0;
+        long classifyNanos = 0;
+        long renderNanos = 0;
+        long allocated = 0;
+        for (Span span : spans) {
+            if (PARSE.equals(span.phase)) {
+                parseNanos += span.nanos;
+            } else if (CLASSIFY.equals(span.phase)) {
+                classifyNanos += span.nanos;
+            } else if (RENDER.equals(span.phase)) {
+                renderNanos += span.nanos;
+            }
+            allocated = allocated < 0 || span.allocatedBytes < 0 ? -1 : allocated + span.allocatedBytes;
+        }
+        profiles.add(new ProfileMetrics(fileName, bytes, parseNanos, classifyNanos, renderNanos, allocated));
+    }
+
+    /**
+     * Stops the wall clock.
+     */
+    public RunMetrics finish() {
+        endNanos = System.nanoTime();
+        return this;
+    }
+
+    private void add(String phase, long nanos, long bytes, long allocatedBytes) {
+        PhaseTotals totals = phases.computeIfAbsent(phase, key -> new PhaseTotals());
+        totals.count.incrementAndGet();
+        totals.nanos.addAndGet(nanos);
+        totals.bytes.addAndGet(bytes);
+        if (allocatedBytes >= 0 && totals.allocatedBytes.get() >= 0) {
+            totals.allocatedBytes.addAndGet(allocatedBytes);
+        } else {
+            totals.allocatedBytes.set(-1);
+        }
+    }
+
+    public JsonObject toJsonObject() {
+        JsonObject json = new JsonObject();
+        json.addProperty("wallMillis", millis((endNanos < 0 ? System.nanoTime() : endNanos) - startNanos));
+
+        JsonObject phasesJson = new JsonObject();
+        for (String phase : PHASES) {
+            PhaseTotals totals = phases.get(phase);
+            if (totals == null) {
+                continue;
+            }
+            JsonObject phaseJson = new JsonObject();
+            phaseJson.addProperty("count", totals.count.get());
+            phaseJson.addProperty("totalMillis", millis(totals.nanos.get()));
+            phaseJson.addProperty("bytes", totals.bytes.get());
+            phaseJson.addProperty("allocatedBytes", totals.allocatedBytes.get());
+            phasesJson.add(phase, phaseJson);
+        }
+        json.add("phases", phasesJson);
+
+        List<ProfileMetrics> snapshot;
+        synchronized (profiles) {
+            snapshot = new ArrayList<>(profiles);
+        }
+        JsonObject profilesJson = new JsonObject();
+        profilesJson.addProperty("count", snapshot.size());
+        long totalBytes = 0;
+        for (ProfileMetrics profile : snapshot) {
+            totalBytes += profile.bytes;
+        }
+        profilesJson.addProperty("totalBytes", totalBytes);
+
+        long[] nanos = snapshot.stream().mapToLong(ProfileMetrics::getTotalNanos).sorted().toArray();
+        JsonObject millisPercentiles = new JsonObject();
+        JsonObject bytesPercentiles = new JsonObject();
+        long[] sizes = snapshot.stream().mapToLong(profile -> profile.bytes).sorted().toArray();
+        for (int percentile : new int[]{50, 90, 99, 100}) {
+            String key = percentile == 100 ? "max" : "p" + percentile;
+            millisPercentiles.addProperty(key, millis(percentile(nanos, percentile)));
+            bytesPercentiles.addProperty(key, percentile(sizes, percentile));
+        }
+        profilesJson.add("millisPercentiles", millisPercentiles);
+        profilesJson.add("bytesPercentiles", bytesPercentiles);
+
+        List<ProfileMetrics> sorted = new ArrayList<>(snapshot);
+        sorted.sort(Comparator.comparingLong(ProfileMetrics::getTotalNanos).reversed());
+        profilesJson.add("slowest", toJsonArray(sorted));
+        sorted.sort(Comparator.comparingLong((ProfileMetrics profile) -> profile.bytes).reversed());
+        profilesJson.add("largest", toJsonArray(sorted));
+
+        json.add("profiles", profilesJson);
+        return json;
+    }
+
+    public String toJson() {
+        return new GsonBuilder().setPrettyPrinting().create().toJson(toJsonObject());
+    }
+
+    private static JsonArray toJsonArray(List<ProfileMetrics> sorted) {
+        JsonArray json = new JsonArray();
+        for (ProfileMetrics profile : sorted.subList(0, Math.min(TOP_PROFILES, sorted.size()))) {
+            json.add(profile.toJsonObject());
+        }
+        return json;
+    }
+
+    /**
+     * Nearest-rank percentile of sorted values, 0 for none.
+     */
+    private static long percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = AllocationCounter.THREADS;
+        return threads != null ? threads.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+
+    /**
+     * Loaded on the first measured span only, so runs without a metrics report don't pay for java.management.
+     */
+    private static class AllocationCounter {
+        private static final com.sun.management.ThreadMXBean THREADS = load();
+
+        private static com.sun.management.ThreadMXBean load() {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+                if (allocation.isThreadAllocatedMemorySupported() && allocation.isThreadAllocatedMemoryEnabled()) {
+                    return allocation;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Command line options shared by the processors' run loops.
+ */
+public class RunOptions {
+    private boolean streaming = false;
+    private int threads = ProfileTaskRunner.defaultThreads();
+    private boolean incremental = false;
+    private boolean watch = false;
+    private MissingFilePolicy missingFilePolicy = MissingFilePolicy.ASK;
+    private OutputMode outputMode = OutputMode.PAGES;
+    private DiscoveryMode discoveryMode = DiscoveryMode.INDEX;
+    private InputMode inputMode = InputMode.FILES;
+    private File summaryFile = null;
+    private File metricsFile = null;
+    private File root = null;
+    private ExecutorService executor = null;
+
+    /**
+     * When true, StructureDefinitions are read with {@link StreamingSnapshotExtractor} instead of a full Gson tree.
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public RunOptions setStreaming(boolean streaming) {
+        this.streaming = streaming;
+        return this;
+    }
+
+    /**
+     * Number of workers used for the per-profile parse/classify/render step. Defaults to the core count; 1 processes
+     * profiles one at a time on the calling thread.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public RunOptions setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1, was " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * When true, profiles whose content hasn't changed since the last run are served from {@link IntroCache}.
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public RunOptions setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    /**
+     * When true, the processor keeps running after the first pass and regenerates intros whenever StructureDefinitions
+     * in the output folder are created, modified or deleted.
+     */
+    public boolean isWatch() {
+        return watch;
+    }
+
+    public RunOptions setWatch(boolean watch) {
+        this.watch = watch;
+        return this;
+    }
+
+    /**
+     * What to do with generated intros that have no intro file yet. Anything but {@link MissingFilePolicy#ASK} never
+     * reads stdin, for unattended runs.
+     */
+    public MissingFilePolicy getMissingFilePolicy() {
+        return missingFilePolicy;
+    }
+
+    public RunOptions setMissingFilePolicy(MissingFilePolicy missingFilePolicy) {
+        this.missingFilePolicy = missingFilePolicy;
+        return this;
+    }
+
+    /**
+     * Whether intros are injected into the IG's pages or written to one {@link IntroDataFile}.
+     */
+    public OutputMode getOutputMode() {
+        return outputMode;
+    }
+
+    public RunOptions setOutputMode(OutputMode outputMode) {
+        this.outputMode = outputMode;
+        return this;
+    }
+
+    /**
+     * How the StructureDefinitions are found in the output folder (see {@link ProfileDiscovery}).
+     */
+    public DiscoveryMode getDiscoveryMode() {
+        return discoveryMode;
+    }
+
+    public RunOptions setDiscoveryMode(DiscoveryMode discoveryMode) {
+        this.discoveryMode = discoveryMode;
+        return this;
+    }
+
+    /**
+     * Whether the StructureDefinitions are read from the output folder's files or from an archive
+     * ({@link ProfileArchive}).
+     */
+    public InputMode getInputMode() {
+        return inputMode;
+    }
+
+    public RunOptions setInputMode(InputMode inputMode) {
+        this.inputMode = inputMode;
+        return this;
+    }
+
+    /**
+     * File the run's {@link RunSummary} is written to as JSON ("-" for stdout), or null for none.
+     */
+    public File getSummaryFile() {
+        return summaryFile;
+    }
+
+    public RunOptions setSummaryFile(File summaryFile) {
+        this.summaryFile = summaryFile;
+        return this;
+    }
+
+    /**
+     * File a {@link RunMetrics} report (per-phase and per-profile timings) is written to as JSON ("-" for stdout), or
+     * null to collect none.
+     */
+    public File getMetricsFile() {
+        return metricsFile;
+    }
+
+    public RunOptions setMetricsFile(File metricsFile) {
+        this.metricsFile = metricsFile;
+        return this;
+    }
+
+    /**
+     * IG root directory the processors' output/ and input/ folders are resolved against; null for the working directory.
+     */
+    public File getRoot() {
+        return root;
+    }
+
+    public RunOptions setRoot(File root) {
+        this.root = root;
+        return this;
+    }
+
+    /**
+     * Resolves a path relative to the IG root; absolute paths are returned as is.
+     */
+    public File resolve(String path) {
+        File file = new File(path);
+        return root == null || file.isAbsolute() ? file : new File(root, path);
+    }
+
+    /**
+     * Worker pool shared across several runs (ie all roots of a batch) instead of a pool per run; null if not shared.
+     * The pool is owned by whoever set it.
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    public RunOptions setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Copy of these options, so a batch can give each root its own {@link #setRoot(File)}.
+     */
+    public RunOptions copy() {
+        return new RunOptions()
+                .setStreaming(streaming)
+                .setThreads(threads)
+                .setIncremental(incremental)
+                .setWatch(watch)
+                .setMissingFilePolicy(missingFilePolicy)
+                .setOutputMode(outputMode)
+                .setDiscoveryMode(discoveryMode)
+                .setInputMode(inputMode)
+                .setSummaryFile(summaryFile)
+                .setMetricsFile(metricsFile)
+                .setRoot(root)
+                .setExecutor(executor);
+    }
+}
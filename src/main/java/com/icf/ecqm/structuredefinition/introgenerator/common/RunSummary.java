@@ -0,0 +1,132 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import com.google.gson.JsonObject;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counters for one run, printed at the end of it and available as JSON for batch pipelines. Thread-safe.
+ */
+public class RunSummary {
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos = -1;
+
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger generated = new AtomicInteger();
+    private final AtomicInteger written = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
+    private final AtomicInteger missing = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+    private volatile RunMetrics metrics;
+
+    /**
+     * Records one StructureDefinition that was processed, and whether it produced a (non-empty) intro.
+     */
+    public void recordProcessed(boolean introGenerated) {
+        processed.incrementAndGet();
+        if (introGenerated) {
+            generated.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records the outcome of {@link IntroFileWriter#writeIfChanged}.
+     */
+    public void recordWrite(boolean changed) {
+        if (changed) {
+            written.incrementAndGet();
+        } else {
+            unchanged.incrementAndGet();
+        }
+    }
+
+    public void recordMissing(int count) {
+        missing.addAndGet(count);
+    }
+
+    public void recordError() {
+        errors.incrementAndGet();
+    }
+
+    /**
+     * Adds another run's counts to this one (elapsed time is this summary's own).
+     */
+    public void add(RunSummary other) {
+        processed.addAndGet(other.getProcessed());
+        generated.addAndGet(other.getGenerated());
+        written.addAndGet(other.getWritten());
+        unchanged.addAndGet(other.getUnchanged());
+        missing.addAndGet(other.getMissing());
+        errors.addAndGet(other.getErrors());
+    }
+
+    /**
+     * Stops the elapsed time clock.
+     */
+    public RunSummary finish() {
+        endNanos = System.nanoTime();
+        return this;
+    }
+
+    public int getProcessed() {
+        return processed.get();
+    }
+
+    public int getGenerated() {
+        return generated.get();
+    }
+
+    public int getWritten() {
+        return written.get();
+    }
+
+    public int getUnchanged() {
+        return unchanged.get();
+    }
+
+    public int getMissing() {
+        return missing.get();
+    }
+
+    public int getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * The run's timings when they were collected ({@link RunOptions#getMetricsFile()}), otherwise null.
+     */
+    public RunMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public long getElapsedMillis() {
+        return ((endNanos < 0 ? System.nanoTime() : endNanos) - startNanos) / 1_000_000;
+    }
+
+    public JsonObject toJsonObject() {
+        JsonObject json = new JsonObject();
+        json.addProperty("processed", getProcessed());
+        json.addProperty("generated", getGenerated());
+        json.addProperty("written", getWritten());
+        json.addProperty("unchanged", getUnchanged());
+        json.addProperty("missing", getMissing());
+        json.addProperty("errors", getErrors());
+        json.addProperty("elapsedMillis", getElapsedMillis());
+        return json;
+    }
+
+    public String toJson() {
+        return toJsonObject().toString();
+    }
+
+    @Override
+    public String toString() {
+        return "Processed " + getProcessed() + " profile(s), generated " + getGenerated() + " intro(s). Files written: "
+                + getWritten() + ", unchanged (left untouched): " + getUnchanged() + ". Missing intro files: " + getMissing()
+                + ". Errors: " + getErrors() + ". Elapsed: " + getElapsedMillis() + " ms.";
+    }
+}
@@ -0,0 +1,180 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Pulls a {@link StructureDefinitionRecord} out of a StructureDefinition with a single forward pass of a Gson
+ * {@link JsonReader}. Only root id/title/extension and the handful of snapshot.element fields the
+ * processors use are kept; text, mappings, differential, constraints, bindings etc. are skipped with
+ * {@link JsonReader#skipValue()} and never turned into objects, so memory per profile is bounded by the
+ * compact element records rather than by the size of the file.
+ */
+public class StreamingSnapshotExtractor {
+
+    private StreamingSnapshotExtractor() {
+    }
+
+    public static StructureDefinitionRecord extract(Reader reader) throws IOException {
+        JsonReader jsonReader = new JsonReader(reader);
+
+        String id = null;
+        String title = null;
+        Map<String, String> extensionValueStrings = new HashMap<>();
+        List<ElementRecord> elements = null;
+
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            switch (jsonReader.nextName()) {
+                case "id":
+                    id = nextString(jsonReader);
+                    break;
+                case "title":
+                    title = nextString(jsonReader);
+                    break;
+                case "extension":
+                    readRootExtensions(jsonReader, extensionValueStrings);
+                    break;
+                case "snapshot":
+                    elements = readSnapshot(jsonReader);
+                    break;
+                default:
+                    jsonReader.skipValue();
+            }
+        }
+        jsonReader.endObject();
+
+        return new StructureDefinitionRecord(id, title, extensionValueStrings, elements);
+    }
+
+    private static void readRootExtensions(JsonReader jsonReader, Map<String, String> extensionValueStrings) throws IOException {
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            String url = null;
+            String valueString = null;
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                switch (jsonReader.nextName()) {
+                    case "url":
+                        url = nextString(jsonReader);
+                        break;
+                    case "valueString":
+                        valueString = nextString(jsonReader);
+                        break;
+                    default:
+                        jsonReader.skipValue();
+                }
+            }
+            jsonReader.endObject();
+            if (url != null && valueString != null) {
+                extensionValueStrings.putIfAbsent(url, valueString);
+            }
+        }
+        jsonReader.endArray();
+    }
+
+    private static List<ElementRecord> readSnapshot(JsonReader jsonReader) throws IOException {
+        List<ElementRecord> elements = null;
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            if (jsonReader.nextName().equals("element")) {
+                elements = new ArrayList<>();
+                jsonReader.beginArray();
+                while (jsonReader.hasNext()) {
+                    elements.add(readElement(jsonReader));
+                }
+                jsonReader.endArray();
+            } else {
+                jsonReader.skipValue();
+            }
+        }
+        jsonReader.endObject();
+        return elements;
+    }
+
+    private static ElementRecord readElement(JsonReader jsonReader) throws IOException {
+        String id = null;
+        String path = null;
+        String sliceName = null;
+        String shortDesc = null;
+        Integer min = null;
+        String max = null;
+        Boolean mustSupport = null;
+        List<String> extensionUrls = null;
+
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            switch (jsonReader.nextName()) {
+                case "id":
+                    id = nextString(jsonReader);
+                    break;
+                case "path":
+                    path = nextString(jsonReader);
+                    break;
+                case "sliceName":
+                    sliceName = nextString(jsonReader);
+                    break;
+                case "short":
+                    shortDesc = nextString(jsonReader);
+                    break;
+                case "min":
+                    if (jsonReader.peek() == JsonToken.NULL) {
+                        jsonReader.nextNull();
+                    } else {
+                        min = jsonReader.nextInt();
+                    }
+                    break;
+                case "max":
+                    max = nextString(jsonReader);
+                    break;
+                case "mustSupport":
+                    if (jsonReader.peek() == JsonToken.NULL) {
+                        jsonReader.nextNull();
+                    } else {
+                        mustSupport = jsonReader.nextBoolean();
+                    }
+                    break;
+                case "extension":
+                    extensionUrls = readExtensionUrls(jsonReader);
+                    break;
+                default:
+                    jsonReader.skipValue();
+            }
+        }
+        jsonReader.endObject();
+
+        return new ElementRecord(id, path, sliceName, shortDesc, min, max, mustSupport, extensionUrls);
+    }
+
+    private static List<String> readExtensionUrls(JsonReader jsonReader) throws IOException {
+        List<String> urls = new ArrayList<>();
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                if (jsonReader.nextName().equals("url")) {
+                    String url = nextString(jsonReader);
+                    if (url != null) {
+                        urls.add(url);
+                    }
+                } else {
+                    jsonReader.skipValue();
+                }
+            }
+            jsonReader.endObject();
+        }
+        jsonReader.endArray();
+        return urls;
+    }
+
+    private static String nextString(JsonReader jsonReader) throws IOException {
+        if (jsonReader.peek() == JsonToken.NULL) {
+            jsonReader.nextNull();
+            return null;
+        }
+        return jsonReader.nextString();
+    }
+}
@@ -0,0 +1,87 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deduplicates the strings profiles keep for the rest of a run: the "element: short description" entries of their
+ * {@link IntroData}, held by every result until the page or data file is written (and for as long as --watch or the
+ * server runs). Most elements inherit their short description from the base resource, so the same entries
+ * ("identifier: Business identifier", "status: registered | preliminary | final") come back in profile after profile.
+ * <p>
+ * Thread-safe and shared by all runs in the JVM. It stops taking new strings once it holds {@link #MAX_SIZE}, so
+ * a long running server can't grow it without limit; later strings are then just returned as they are. Unlike
+ * String.intern() it is cleared with {@link #clear()} and can be turned off for comparisons.
+ */
+public final class StringPool {
+    static final int MAX_SIZE = 64 * 1024;
+
+    private static final ConcurrentHashMap<String, String> POOL = new ConcurrentHashMap<>();
+    private static final LongAdder lookups = new LongAdder();
+    private static final LongAdder hits = new LongAdder();
+    private static volatile boolean enabled = true;
+
+    private StringPool() {
+    }
+
+    /**
+     * @return the pooled copy of the string, or the string itself if it is the first copy (or the pool is full or off)
+     */
+    public static String intern(String value) {
+        if (!enabled || value == null) {
+            return value;
+        }
+        lookups.increment();
+        String pooled = POOL.get(value);
+        if (pooled == null) {
+            if (POOL.size() >= MAX_SIZE) {
+                return value;
+            }
+            pooled = POOL.putIfAbsent(value, value);
+            if (pooled == null) {
+                return value;
+            }
+        }
+        hits.increment();
+        return pooled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        StringPool.enabled = enabled;
+    }
+
+    /**
+     * Empties the pool and resets its counts.
+     */
+    public static void clear() {
+        POOL.clear();
+        lookups.reset();
+        hits.reset();
+    }
+
+    public static int size() {
+        return POOL.size();
+    }
+
+    public static long getLookups() {
+        return lookups.sum();
+    }
+
+    /**
+     * Lookups that returned an existing copy, ie strings that no longer have to be kept twice.
+     */
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    public static String getSummary() {
+        long lookupCount = getLookups();
+        return "String pool: " + size() + " strings, " + getHits() + " of " + lookupCount + " lookups deduplicated"
+                + (lookupCount == 0 ? "" : String.format(Locale.ROOT, " (%.0f%%)", 100.0 * getHits() / lookupCount)) + ".";
+    }
+}
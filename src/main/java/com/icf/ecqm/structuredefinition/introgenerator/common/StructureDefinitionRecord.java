@@ -0,0 +1,110 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.*;
+
+/**
+ * The parts of a StructureDefinition the intro generators work from: id, title, the root extension
+ * valueStrings (primary code path etc.) and the snapshot elements as {@link ElementRecord}s.
+ * Built either from a parsed Gson tree ({@link #fromJson(JsonObject)}) or by {@link StreamingSnapshotExtractor}.
+ */
+public class StructureDefinitionRecord {
+    private static final String SNAPSHOT = "snapshot";
+    private static final String ELEMENT = "element";
+    private static final String EXTENSION = "extension";
+    private static final String URL = "url";
+    private static final String VALUE_STRING = "valueString";
+
+    private final String id;
+    private final String title;
+    private final Map<String, String> extensionValueStrings;
+    private final List<ElementRecord> elements;
+
+    public StructureDefinitionRecord(String id, String title, Map<String, String> extensionValueStrings,
+                                     List<ElementRecord> elements) {
+        this.id = id;
+        this.title = title;
+        this.extensionValueStrings = extensionValueStrings == null ? Collections.emptyMap() : extensionValueStrings;
+        this.elements = elements;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * valueString of the first root extension with the given url that carries one, or null.
+     */
+    public String getExtensionValueString(String url) {
+        return extensionValueStrings.get(url);
+    }
+
+    public List<ElementRecord> getSnapshotElements() {
+        if (elements == null) {
+            throw new IllegalStateException("StructureDefinition " + id + " has no snapshot.element array");
+        }
+        return elements;
+    }
+
+    public static StructureDefinitionRecord fromJson(JsonObject root) {
+        Map<String, String> extensionValueStrings = new HashMap<>();
+        if (root.has(EXTENSION)) {
+            for (JsonElement extElement : root.getAsJsonArray(EXTENSION)) {
+                JsonObject extObj = extElement.getAsJsonObject();
+                String url = getString(extObj, URL);
+                String valueString = getString(extObj, VALUE_STRING);
+                if (url != null && valueString != null) {
+                    extensionValueStrings.putIfAbsent(url, valueString);
+                }
+            }
+        }
+
+        List<ElementRecord> elements = null;
+        if (root.has(SNAPSHOT) && root.getAsJsonObject(SNAPSHOT).has(ELEMENT)) {
+            JsonArray elementArray = root.getAsJsonObject(SNAPSHOT).getAsJsonArray(ELEMENT);
+            elements = new ArrayList<>(elementArray.size());
+            for (JsonElement element : elementArray) {
+                elements.add(elementFromJson(element.getAsJsonObject()));
+            }
+        }
+
+        return new StructureDefinitionRecord(getString(root, "id"), getString(root, "title"), extensionValueStrings, elements);
+    }
+
+    private static ElementRecord elementFromJson(JsonObject elementObj) {
+        List<String> extensionUrls = null;
+        if (elementObj.has(EXTENSION)) {
+            extensionUrls = new ArrayList<>();
+            for (JsonElement extElement : elementObj.getAsJsonArray(EXTENSION)) {
+                String url = getString(extElement.getAsJsonObject(), URL);
+                if (url != null) {
+                    extensionUrls.add(url);
+                }
+            }
+        }
+
+        JsonElement min = elementObj.get("min");
+        JsonElement mustSupport = elementObj.get("mustSupport");
+        return new ElementRecord(
+                getString(elementObj, "id"),
+                getString(elementObj, "path"),
+                getString(elementObj, "sliceName"),
+                getString(elementObj, "short"),
+                min == null || min.isJsonNull() ? null : min.getAsInt(),
+                getString(elementObj, "max"),
+                mustSupport == null || mustSupport.isJsonNull() ? null : mustSupport.getAsBoolean(),
+                extensionUrls);
+    }
+
+    private static String getString(JsonObject obj, String name) {
+        JsonElement value = obj.get(name);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+}
@@ -0,0 +1,166 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal sequential reader for the tar streams inside FHIR packages (npm pack output): ustar headers with their
+ * name prefix, GNU long names and pax "path" records. Only regular files are passed on.
+ */
+final class TarReader {
+    private static final int BLOCK_SIZE = 512;
+
+    interface EntryVisitor {
+        /**
+         * @param in the entry's content; it needn't be read to the end
+         */
+        void visit(String path, long size, InputStream in) throws IOException;
+    }
+
+    private TarReader() {
+    }
+
+    static void forEachFile(InputStream in, EntryVisitor visitor) throws IOException {
+        byte[] header = new byte[BLOCK_SIZE];
+        String longPath = null;
+        while (readBlock(in, header) && !isZero(header)) {
+            String path = string(header, 0, 100);
+            if (string(header, 257, 5).equals("ustar")) {
+                String prefix = string(header, 345, 155);
+                if (!prefix.isEmpty()) {
+                    path = prefix + "/" + path;
+                }
+            }
+            long size = octal(header, 124, 12);
+            char type = (char) header[156];
+            if (longPath != null) {
+                path = longPath;
+                longPath = null;
+            }
+
+            EntryStream entry = new EntryStream(in, size);
+            if (type == 'L') {
+                longPath = new String(entry.readAllBytes(), StandardCharsets.UTF_8).replace("\0", "");
+            } else if (type == 'x') {
+                longPath = paxPath(new String(entry.readAllBytes(), StandardCharsets.UTF_8));
+            } else if (type == '0' || type == '\0') {
+                visitor.visit(path, size, entry);
+            }
+            skip(in, entry.remaining + (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE);
+        }
+    }
+
+    private static boolean readBlock(InputStream in, byte[] block) throws IOException {
+        int read = in.readNBytes(block, 0, block.length);
+        if (read == 0) {
+            return false;
+        }
+        if (read < block.length) {
+            throw new EOFException("Truncated tar header");
+        }
+        return true;
+    }
+
+    private static boolean isZero(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String string(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static long octal(byte[] header, int offset, int length) throws IOException {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0 || b == ' ') {
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("Unsupported tar entry size");
+            }
+            value = value * 8 + (b - '0');
+        }
+        return value;
+    }
+
+    /**
+     * @return the "path" of a pax extended header ("LEN path=VALUE\n" records), or null
+     */
+    private static String paxPath(String records) {
+        for (String record : records.split("\n")) {
+            int space = record.indexOf(' ');
+            if (space != -1 && record.startsWith("path=", space + 1)) {
+                return record.substring(space + 1 + "path=".length());
+            }
+        }
+        return null;
+    }
+
+    private static void skip(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new EOFException("Truncated tar entry");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    /**
+     * One entry's bytes; closing it leaves the archive stream open.
+     */
+    private static final class EntryStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        private EntryStream(InputStream in, long size) {
+            this.in = in;
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Truncated tar entry");
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read == -1) {
+                throw new EOFException("Truncated tar entry");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
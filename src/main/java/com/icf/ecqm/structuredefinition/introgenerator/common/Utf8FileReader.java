@@ -0,0 +1,97 @@
+package com.icf.ecqm.structuredefinition.introgenerator.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file as UTF-8 (whatever the platform charset) straight from its FileChannel, for the JSON parsers.
+ * <p>
+ * Bytes are read in chunks of up to 64 KB (the whole file when it is smaller) and decoded into an 8K char buffer, so
+ * memory stays bounded for multi-MB snapshots while a typical profile is read with one or two system calls.
+ * Malformed input is replaced (as FileReader did) rather than failing the profile.
+ */
+public final class Utf8FileReader extends Reader {
+    private static final int MAX_BYTE_BUFFER_SIZE = 64 * 1024;
+    //room for a split multi-byte sequence when compacting
+    private static final int MIN_BYTE_BUFFER_SIZE = 16;
+    private static final int CHAR_BUFFER_SIZE = 8 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer bytes;
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private boolean endOfFile;
+    private boolean flushed;
+
+    public Utf8FileReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            //+1 so a file that fits is read to its end in one pass
+            bytes = ByteBuffer.allocate((int) Math.max(MIN_BYTE_BUFFER_SIZE, Math.min(size + 1, MAX_BYTE_BUFFER_SIZE)));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        bytes.flip();
+        chars.flip();
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > cbuf.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+        int read = Math.min(len, chars.remaining());
+        chars.get(cbuf, off, read);
+        return read;
+    }
+
+    /**
+     * Decodes the next chars into the (empty) char buffer, reading more bytes as needed.
+     *
+     * @return false at the end of the file
+     */
+    private boolean fill() throws IOException {
+        chars.clear();
+        while (chars.position() == 0) {
+            if (endOfFile) {
+                if (!flushed) {
+                    decoder.decode(bytes, chars, true);
+                    decoder.flush(chars);
+                    flushed = true;
+                }
+                break;
+            }
+            decoder.decode(bytes, chars, false);
+            if (chars.position() == 0) {
+                bytes.compact();
+                endOfFile = channel.read(bytes) == -1;
+                bytes.flip();
+            }
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
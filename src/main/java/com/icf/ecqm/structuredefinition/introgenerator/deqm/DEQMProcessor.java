@@ -1,37 +1,60 @@
 package com.icf.ecqm.structuredefinition.introgenerator.deqm;
 
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.icf.ecqm.structuredefinition.introgenerator.common.AbstractProcessor;
+import com.icf.ecqm.structuredefinition.introgenerator.common.ElementIndex;
+import com.icf.ecqm.structuredefinition.introgenerator.common.ElementRecord;
+import com.icf.ecqm.structuredefinition.introgenerator.common.IntroData;
+import com.icf.ecqm.structuredefinition.introgenerator.common.Log;
+import com.icf.ecqm.structuredefinition.introgenerator.common.MarkdownText;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RenderBuffer;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunOptions;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunSummary;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RuleSet;
+import com.icf.ecqm.structuredefinition.introgenerator.common.StructureDefinitionRecord;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
-public class DEQMProcessor {
+/**
+ * DEQM intro engine, classifying with the built in deqm {@link RuleSet} or one read from a config. Instances hold no
+ * mutable state and can be shared across threads.
+ */
+public class DEQMProcessor extends AbstractProcessor<DEQMProcessor.Classification> {
     public static final String ASSIGN_ID = "{% assign id = {{include.id}} %}";
     public static final String FIXED_CODE = "fixedCode";
-    private static final String SNAPSHOT = "snapshot";
-    private static final String ELEMENT = "element";
-    private static final String STRUCTURE_DEFINITION = "StructureDefinition";
-    private static final String ID = "id";
-    private static final String SHORT = "short";
-    private static final String MUST_SUPPORT = "mustSupport";
     //TODO: Possible align with fhir-qi-core which uses "intro-notes" as folder name:
     private static final String pageContentFolder = "input" + File.separator + "pagecontent";
-    private static final String outputFolder = "output";
+    private static final String mdPageFile = "musthave-qi-list.md";
     private static final String beginTag = "<!--Begin Generated Intro Tag (DO NOT REMOVE)-->";
     private static final String endTag = "<!--End Generated Intro (DO NOT REMOVE)-->";
     private static final String mustHaveTag = "Each [type] Must Have:";
     private static final String mustSupportTag = "Each [type] Must Support:";
-    private static final String MIN = "min";
-    private static final String MAX = "max";
+    private static final String THIS_MUST_HAVE_TAG = mustHaveTag.replace("[type]", "{{site.data.structuredefinitions.[id].type}}");
+    private static final String THIS_MUST_SUPPORT_TAG = mustSupportTag.replace("[type]", "{{site.data.structuredefinitions.[id].type}}");
 
     private static final String mainTitle = "### Mandatory Data Elements and Terminology\nThe following data-elements are mandatory (i.e data MUST be present).\n\n";
 
     private static final String[] PARENT_TYPES = {"extension", "entry"};
 
+    private final RuleSet rules;
+    private final int mustHaveList;
+    private final int mustSupportList;
+
+    public DEQMProcessor() {
+        this(RuleSet.builtIn("deqm"));
+    }
+
+    /**
+     * @param rules must have a "mustHave" and a "mustSupport" list
+     */
+    public DEQMProcessor(RuleSet rules) {
+        int[] lists = rules.requireLists("mustHave", "mustSupport");
+        this.rules = rules;
+        this.mustHaveList = lists[0];
+        this.mustSupportList = lists[1];
+    }
 
     /**
      * This tool will generate intro files in html within the davinci-deqm\input\intro-notes xml files corresponding to each StructureDefinition file.
@@ -44,12 +67,12 @@ public class DEQMProcessor {
      *
      * @param args -ms indicates QI utilizes must support flag
      */
-    public static void runTest() {
+    public void runTest() {
         StringBuilder contentBuilder = new StringBuilder();
         // Read the input stream and convert it to a string
         try (InputStream inputStream = com.icf.ecqm.structuredefinition.introgenerator.Main.class.getClassLoader().getResourceAsStream("StructureDefinition-qicore-adverseevent.json")) {
             assert inputStream != null;
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
                 String line;
                 while ((line = reader.readLine()) != null) {
                     contentBuilder.append(line).append(System.lineSeparator());
@@ -60,191 +83,77 @@ public class DEQMProcessor {
             throw new RuntimeException(e);
         }
 
-        System.out.println("File read successfully. Content length: " + contentBuilder.length());
-        System.out.println(buildStructureDefinitionIntro(contentBuilder.toString()));
+        Log.info("File read successfully. Content length: " + contentBuilder.length());
+        Log.info(buildStructureDefinitionIntro(contentBuilder.toString()));
     }
 
-    public static void runMain() {
-        //cycle through all json structure defintion files in output folder:
-        File outputDir = new File(outputFolder);
-        File[] outputFiles = outputDir.listFiles((dir, name) -> name.toLowerCase().startsWith(STRUCTURE_DEFINITION.toLowerCase()) &&
-                (name.toLowerCase().endsWith(".json")));
-
-        System.out.println("outputFiles: \n\n" + Arrays.toString(outputFiles));
-
-        assert outputFiles != null;
-        if (outputFiles.length == 0) {
-            System.out.println("Output folder is empty!");
-            return;
-        } else {
-            Map<String, String> structureDefinitionIntroMap = new HashMap<>();
-            Map<String, String> mdMap = new HashMap<>();
-
-            for (File outputFile : outputFiles) {
-                System.out.println("\r\nProcessing " + outputFile.getAbsolutePath());
-
-                try {
-                    JsonObject outputJson = parseJsonFromFile(outputFile);
-
-                    String id = outputJson.get(ID).getAsString();
-
-                    //TODO: Align with fhir-qi-core to have intro files be .xml (or align fhir-qi-core with .md approach here)
-                    String introNoteFileName = "StructureDefinition-" + id + "-intro.md";
-
-                    String structureDefinitionIntro = buildStructureDefinitionIntro(outputJson.toString());
-
-                    String thisTitle = JsonParser.parseString(outputJson.toString()).getAsJsonObject().get("title").getAsString();
-                    String htmlFileName = "StructureDefinition-" + id + ".html";
-
-                    //key is title:htmlFileName (split later for titling on generated page.)
-                    mdMap.put(thisTitle + ":" + htmlFileName, structureDefinitionIntro);
-
-                    if (!structureDefinitionIntro.isEmpty()) {
-                        System.out.println("Intro generated: " + introNoteFileName + ": \n" + structureDefinitionIntro);
-                        structureDefinitionIntroMap.put(introNoteFileName, structureDefinitionIntro);
-                    } else {
-                        System.out.println("No intro generated (no elements pass criteria): " + introNoteFileName + ": \n" + structureDefinitionIntro);
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error processing file: " + outputFile.getName());
-                    e.printStackTrace();
-                }
-            }
-
-
-            //create our collection md file:
-            try {
-                outputMDMapToFile(mdMap);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-
-
-            File inputDir = new File(pageContentFolder);
-
-            File[] inputFiles = inputDir.listFiles((dir, name) -> name.endsWith(".md"));
-
-            Set<String> introFilesNotFound = new HashSet<>(structureDefinitionIntroMap.keySet());
-            if (inputFiles != null) {
-                //build list of missing files for later
-                for (File file : inputFiles) {
-                    introFilesNotFound.remove(file.getName());
-                }
-                //attempt to write generated intro to corresponding file:
-                for (File inputFile : inputFiles) {
-                    writeToFile(structureDefinitionIntroMap, inputFile.getName(), false);
-                }
-            }
-
-            //some intro files weren't found in the directory so we ask user if we should create them:
-            if (!introFilesNotFound.isEmpty()) {
-                String ask = "\n\rSome intro files were missing: " + String.join(", ", introFilesNotFound) + "\n\r\n\rWould you like to create these files now? (y/n): ";
-                System.out.println(ask);
-
-                Scanner scanner = new Scanner(System.in);
-                String response = scanner.nextLine().trim().toLowerCase();
-
-                while (!response.equals("y") && !response.equals("n")) {
-                    System.out.print(ask);
-                    response = scanner.nextLine().trim().toLowerCase();
-                }
-
-                if (response.equals("y")) {
-                    System.out.println("Creating files...");
-                    for (String introFileName : introFilesNotFound) {
-
-                        writeToFile(structureDefinitionIntroMap, introFileName, true);
-                    }
-                }
-
-                scanner.close(); // Close the scanner
-            }
-            System.out.println("\r\n");
-        }
-
-        System.out.println("File modification is done. Generating the IG should show updated element list in files above.");
-
+    public RunSummary runMain() {
+        return runMain(new RunOptions());
     }
 
-    private static void writeToFile(Map<String, String> structureDefinitionIntroMap, String introFileName, boolean createFile) {
-        try {
-
-            String injectableIntroBody = structureDefinitionIntroMap.get(introFileName);
-            if (injectableIntroBody == null || injectableIntroBody.isEmpty()) return;
-            File introFile = new File(pageContentFolder + File.separator + introFileName);
-            if (createFile) {
-                if (introFile.createNewFile()) {
-                    System.out.println("File created: " + introFile.getName());
-                } else {
-                    System.out.println("File already exists: " + introFile.getName());
-                    return;
-                }
-            }
-            BufferedReader reader = new BufferedReader(new FileReader(introFile));
-            StringBuilder content = buildContent(reader, injectableIntroBody);
-
-            reader.close();
-
-            BufferedWriter writer = new BufferedWriter(new FileWriter(introFile));
-            writer.write(content.toString());
-            writer.close();
+    @Override
+    protected String getIntroFolder() {
+        return pageContentFolder;
+    }
 
-            System.out.println("Injectable intro body added to: " + introFile.getName());
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.out.println("Error creating file: " + introFileName);
-        }
+    @Override
+    protected boolean isIntroFile(String name) {
+        return name.endsWith(".md");
     }
 
-    /**
-     * Turns map into string:
-     * *[key](key.html)**
-     * Must Have:
-     * musthave entry
-     * QI Elements:
-     * qi entry
-     *
-     * @param mdMap
-     */
-    private static void outputMDMapToFile(Map<String, String> mdMap) throws IOException {
-        StringBuilder mdPageBuilder = new StringBuilder();
+    @Override
+    protected String getPageFile() {
+        return mdPageFile;
+    }
 
-        List<String> sortableKeyList = new ArrayList<>(mdMap.keySet());
-        Collections.sort(sortableKeyList);
+    @Override
+    protected String getNewLine() {
+        return "\r\n";
+    }
 
-        for (String key : sortableKeyList) {
-            if (mdMap.get(key).isEmpty()) continue;
+    @Override
+    protected String getMissingFilesQuestion(Collection<String> introFileNames) {
+        return "\n\rSome intro files were missing: " + String.join(", ", introFileNames) + "\n\r\n\rWould you like to create these files now? (y/n): ";
+    }
 
-            String pageContent = mdMap.get(key).replace(mainTitle, "")
-                    .replace(beginTag + "\n", "")
-                    .replace(endTag, "");
+    @Override
+    public String getRuleKey() {
+        return rules.getKey();
+    }
 
-            if (pageContent.contains(mustHaveTag)) {
-                pageContent = pageContent.replace("**" + mustSupportTag + "**\n", "\n**" + mustSupportTag + "**\n");
-            }
+    @Override
+    protected String getIntroFileSuffix() {
+        //TODO: Align with fhir-qi-core to have intro files be .xml (or align fhir-qi-core with .md approach here)
+        return "-intro.md";
+    }
 
-            String title = key.split(":")[0];
-            String fileName = key.split(":")[1];
+    @Override
+    protected String getPageHeader() {
+        return "";
+    }
 
-            mdPageBuilder.append("### [")
-                    .append(title)
-                    .append("](")
-                    .append(fileName)
-                    .append(") ###\n");
+    @Override
+    protected String renderPageEntry(Classification classification) {
+        return renderLists(classification);
+    }
 
-            mdPageBuilder.append(pageContent)
-                    .append("<br>\n<br>\n\n");
+    @Override
+    protected String renderIntro(Classification classification, String pageEntry) {
+        return introOf(pageEntry);
+    }
 
-        }
+    @Override
+    protected void addData(IntroData data, Classification classification) {
+        data.addList("mustHave", classification.mustHaveElements)
+                .addList("mustSupport", classification.mustSupportElements);
+    }
 
-        if (mdPageBuilder.length() > 0) {
-            BufferedWriter writer = new BufferedWriter(new FileWriter("musthave-qi-list.md"));
-            writer.write(mdPageBuilder.toString());
-            writer.close();
-        }
+    @Override
+    protected StringBuilder spliceIntro(BufferedReader existingContent, String intro) throws IOException {
+        return buildContent(existingContent, intro);
     }
 
-    private static StringBuilder buildContent(BufferedReader reader, String injectableIntroBody) throws IOException {
+    static StringBuilder buildContent(BufferedReader reader, String injectableIntroBody) throws IOException {
         StringBuilder content = new StringBuilder();
         String line;
         boolean skipLines = false;
@@ -288,15 +197,6 @@ public class DEQMProcessor {
 //    }
 
 
-    private static JsonObject parseJsonFromFile(File file) throws Exception {
-        try (Reader reader = new FileReader(file)) {
-            return JsonParser.parseReader(reader).getAsJsonObject();
-        }
-    }
-
-
-    private static final Set<String> set_mustHaveParentElements = new HashSet<>();
-    private static final Set<String> set_mustSupportParentElements = new HashSet<>();
 
 
     /**
@@ -311,244 +211,124 @@ public class DEQMProcessor {
      * The element name and short description from the structured definition will display for each element that has a Must Support flag (mustSupport=true in structured definition)
      * <p>
      * No changes at this time to the additional profile specific implementation guidance.
+     * <p>
+     * Child elements are only considered if their parent element passed the same list, at any depth.
      */
-    public static String buildStructureDefinitionIntro(String jsonString) {
-
-
-        JsonObject root = JsonParser.parseString(jsonString).getAsJsonObject();
-
-        String type = root.get("type").getAsString();
-
-        Set<String> mustHaveElements = new HashSet<>();
-        Set<String> mustSupportElements = new HashSet<>();
-
-        JsonArray elements = root.getAsJsonObject(SNAPSHOT).getAsJsonArray(ELEMENT);
+    @Override
+    public String buildStructureDefinitionIntro(StructureDefinitionRecord structureDefinition) {
+        return render(classify(structureDefinition));
+    }
 
-        List<String> parentExtensions = getParentIdentifiers(elements);
+    /**
+     * The profile's entry on the musthave-qi-list page.
+     */
+    String buildMDEntry(StructureDefinitionRecord structureDefinition) {
+        return renderLists(classify(structureDefinition));
+    }
 
-        //Parent Elements only:
-        {
-            for (JsonElement element : elements) {
-                String parentExtensionEntry = "";
+    /**
+     * The elements that passed each list.
+     */
+    static class Classification {
+        private final Set<String> mustHaveElements = new HashSet<>();
+        private final Set<String> mustSupportElements = new HashSet<>();
+    }
 
-                JsonObject elementObj = element.getAsJsonObject();
-                String elementIdentifier = elementObj.get("path").getAsString();
+    @Override
+    protected Classification classify(StructureDefinitionRecord structureDefinition) {
+        Classification classification = new Classification();
+        Set<String> mustHaveElements = classification.mustHaveElements;
+        Set<String> mustSupportElements = classification.mustSupportElements;
 
-                String elementId = elementObj.get("id").getAsString();
-                String[] elementNameParts = elementId.split("\\.");
-                boolean isParent = elementNameParts.length == 2 && !elementId.contains(":");
-                if (!isParent) {
-                    continue;
-                }
+        List<ElementRecord> elements = structureDefinition.getSnapshotElements();
 
-                //check if this is a child of a parent extension (will have .extension in path, but won't END in .extension
-                for (String entry : parentExtensions) {
-                    if (elementId.contains(entry)) {
-                        parentExtensionEntry = entry;
-                        break;
-                    }
-                }
-                //we only analyze and add the parent extension entry, all children to be ignored.
-                if (!parentExtensionEntry.isEmpty()) {
-                    System.out.println("Skipping entry with path: " + elementIdentifier + " and  id " + elementId + ", matched as child to on " + parentExtensionEntry);
-                    continue;
-                }
+        SlicedParentIndex slicedParents = SlicedParentIndex.build(elements, PARENT_TYPES);
 
-                //if path ends in ".extension" use sliceName (skip it if it doesn't have a slicename and ends in .extension)
-                if (elementIdentifier.endsWith(".extension") && !elementObj.has("sliceName")) {
-                    continue;
-                } else if (elementIdentifier.endsWith(".extension") && elementObj.has("sliceName")) {
-                    elementIdentifier = elementObj.get("sliceName").getAsString();
-                } else {
-                    //strip resource type
-                    int dotIndex = elementIdentifier.indexOf('.');
-                    if (dotIndex != -1) {
-                        elementIdentifier = elementIdentifier.substring(dotIndex + 1);
-                    }
-                }
+        //Single pass in snapshot order. Parents always precede their children in a snapshot, so every element is checked
+        //against an ancestor that is already classified (children only considered if their parent passed the same list):
+        ElementIndex index = new ElementIndex();
+        for (ElementRecord elementObj : elements) {
+            ElementIndex.Node node = index.add(elementObj);
 
-                String shortDesc = elementObj.has(SHORT) ? elementObj.get(SHORT).getAsString() : "";
+            String elementIdentifier = elementObj.getPath();
 
-                boolean isMustHave = false;
-                if (elementObj.has(MIN) && elementObj.has(MAX)) {
-                    int min = elementObj.get(MIN).getAsInt();
-                    String max = elementObj.get(MAX).getAsString();
-                    if (min == 1 && (max.equals("1") || max.equals("*"))) {
-                        isMustHave = true;
-                    }
-                }
+            String elementId = elementObj.getId();
 
-                if (isMustHave) {
-                    set_mustHaveParentElements.add(elementId);
-                    mustHaveElements.add(elementIdentifier + ": " + shortDesc);
-                } else {
-
-                    //“Each MeasureReport Must support” section
-                    //The element name and short description from the structured definition will display for each element that has a Must Support flag (mustSupport=true in structured definition)
-                    if (elementObj.has(MUST_SUPPORT) && elementObj.get(MUST_SUPPORT).getAsBoolean()) {
-                        set_mustSupportParentElements.add(elementId);
-                        mustSupportElements.add(elementIdentifier + ": " + shortDesc);
-                    }
-                }
+            //check if this is a child of a parent extension (will have .extension in path, but won't END in .extension
+            String parentExtensionEntry = slicedParents.findSlicedParent(elementId);
+            //we only analyze and add the parent extension entry, all children to be ignored.
+            if (parentExtensionEntry != null) {
+                Log.debug("Skipping entry with path: " + elementIdentifier + " and  id " + elementId + ", matched as child to on ." + parentExtensionEntry + ".");
+                continue;
             }
-        }
-
-        //Child elements only (will check set_ for parent presence before continuing. If parent not present in set, don't add)
-        {
-            for (JsonElement element : elements) {
-                String parentExtensionEntry = "";
-
-                JsonObject elementObj = element.getAsJsonObject();
-                String elementIdentifier = elementObj.get("path").getAsString();
-
-                String elementId = elementObj.get("id").getAsString();
-                String[] elementNameParts = elementId.split("\\.");
-                boolean isParent = elementNameParts.length == 2 && !elementId.contains(":");
-                if (isParent) {
-                    continue;
-                }
 
-                //check if this is a child of a parent extension (will have .extension in path, but won't END in .extension
-                for (String entry : parentExtensions) {
-                    if (elementId.contains(entry)) {
-                        parentExtensionEntry = entry;
-                        break;
-                    }
-                }
-                //we only analyze and add the parent extension entry, all children to be ignored.
-                if (!parentExtensionEntry.isEmpty()) {
-                    System.out.println("Skipping entry with path: " + elementIdentifier + " and  id " + elementId + ", matched as child to on " + parentExtensionEntry);
-                    continue;
-                }
-
-                //if path ends in ".extension" use sliceName (skip it if it doesn't have a slicename and ends in .extension)
-                if (elementIdentifier.endsWith(".extension") && !elementObj.has("sliceName")) {
-                    continue;
-                } else if (elementIdentifier.endsWith(".extension") && elementObj.has("sliceName")) {
-                    elementIdentifier = elementObj.get("sliceName").getAsString();
-                } else {
-                    //strip resource type
-                    int dotIndex = elementIdentifier.indexOf('.');
-                    if (dotIndex != -1) {
-                        elementIdentifier = elementIdentifier.substring(dotIndex + 1);
-                    }
-                }
-
-                String parentElementName = "";
-                if (elementId.contains(".") && !elementId.contains(":")) {
-                    parentElementName = elementId.split("\\.")[0] + "." + elementId.split("\\.")[1];
-                }
-
-                String shortDesc = elementObj.has(SHORT) ? elementObj.get(SHORT).getAsString() : "";
-
-                boolean isMustHave = false;
-                //parent is in mustHave list, so child can be considered:
-                if (parentElementName.isEmpty() || set_mustHaveParentElements.contains(parentElementName)) {
-                    if (elementObj.has(MIN) && elementObj.has(MAX)) {
-                        int min = elementObj.get(MIN).getAsInt();
-                        String max = elementObj.get(MAX).getAsString();
-                        if (min == 1 && (max.equals("1") || max.equals("*"))) {
-                            isMustHave = true;
-                        }
-                    }
-                }
-
-                if (isMustHave) {
-                    mustHaveElements.add(elementIdentifier + ": " + shortDesc);
-                } else {
-                    //only consider child element for qi list if parent element is in qi list
-                    if (parentElementName.isEmpty() || set_mustSupportParentElements.contains(parentElementName)) {
-                        //“Each MeasureReport Must support” section
-                        //The element name and short description from the structured definition will display for each element that has a Must Support flag (mustSupport=true in structured definition)
-                        if (elementObj.has(MUST_SUPPORT) && elementObj.get(MUST_SUPPORT).getAsBoolean()) {
-                            mustSupportElements.add(elementIdentifier + ": " + shortDesc);
-                        }
-                    }
+            //if path ends in ".extension" use sliceName (skip it if it doesn't have a slicename and ends in .extension)
+            if (elementIdentifier.endsWith(".extension") && !elementObj.hasSliceName()) {
+                continue;
+            } else if (elementIdentifier.endsWith(".extension") && elementObj.hasSliceName()) {
+                elementIdentifier = elementObj.getSliceName();
+            } else {
+                //strip resource type
+                int dotIndex = elementIdentifier.indexOf('.');
+                if (dotIndex != -1) {
+                    elementIdentifier = elementIdentifier.substring(dotIndex + 1);
                 }
             }
-        }
 
-        //TODO: Eventually we will want this to retain html as we did in fhir-qi-core, for now it is .md files:
+            String shortDesc = elementObj.getShort() != null ? elementObj.getShort() : "";
 
-        String thisMustHaveTag = mustHaveTag.replace("[type]", "{{site.data.structuredefinitions.[id].type}}");
-        String thisMustSupportTag = mustSupportTag.replace("[type]", "{{site.data.structuredefinitions.[id].type}}");
-
-
-        StringBuilder output = new StringBuilder();
-        if (!mustHaveElements.isEmpty()) {
-            output.append("<b>").append(thisMustHaveTag).append("</b>\n")
-                    .append("<ul>\n");
-            int counter = 1;
-            for (String element : mustHaveElements) {
-                output.append("<li>")
-                        .append(counter)
-                        .append(". ")
-                        .append(element)
-                        .append("</li>\n");
-                counter++;
+            int list = rules.classify(elementObj, node);
+            if (list == mustHaveList) {
+                mustHaveElements.add(elementIdentifier + ": " + shortDesc);
+            } else if (list == mustSupportList) {
+                //“Each MeasureReport Must support” section
+                //The element name and short description from the structured definition will display for each element that has a Must Support flag (mustSupport=true in structured definition)
+                mustSupportElements.add(elementIdentifier + ": " + shortDesc);
             }
-            output.append("</ul>")
-                    .append("\n\n");
         }
+        return classification;
+    }
 
-        if (!mustSupportElements.isEmpty()) {
-            output.append("<b>").append(thisMustSupportTag).append("</b>\n")
-                    .append("<ul>\n");
-            int counter = 1;
-            for (String element : mustSupportElements) {
-                output.append("<li>")
-                        .append(counter)
-                        .append(". ")
-                        .append(element)
-                        .append("</li>\n");
-                counter++;
-            }
-            output.append("</ul>")
-                    .append("\n\n");
-        }
+    private static String render(Classification classification) {
+        return introOf(renderLists(classification));
+    }
 
-        if (output.length() > 0) {
-            //TODO: remove call to processToMDOutput here, put it in outputMDMapToFile at "String pageContent = mdMap.get(key)":
-            return processToMDOutput(beginTag + "\n" + mainTitle + output + endTag, thisMustHaveTag, thisMustSupportTag);
-        } else {
+    private static String introOf(String lists) {
+        if (lists.isEmpty()) {
             return "";
         }
+        //TODO: Eventually we will want this to retain html as we did in fhir-qi-core, for now it is .md files:
+        return beginTag + "\n" + mainTitle + lists + endTag;
     }
 
-    private static List<String> getParentIdentifiers(JsonArray elements) {
-        List<String> parentExtensions = new ArrayList<>();
-
-        for (JsonElement element : elements) {
-            JsonObject elementObj = element.getAsJsonObject();
-
-            //parent extension entries follow an id path ending in .extension:sliceName. Record these first, avoid children.
-            //store the string ".extension:" + sliceName + "." to check id in later check to confirm child extension entry.
-            // Children id will contain string.
-            for (String parentType : PARENT_TYPES) {
-                if (elementObj.has("sliceName") &&
-                        (elementObj.get("id").getAsString().endsWith("." + parentType + ":" + elementObj.get("sliceName").getAsString()))
-                ) {
-                    parentExtensions.add("." + parentType + ":" + elementObj.get("sliceName").getAsString() + ".");
-                }
-            }
-
-
+    /**
+     * The Must Have and Must Support lists as numbered Markdown lists with '|' escaped in element texts: the body of the intro,
+     * and on its own the profile's entry on the musthave-qi-list page.
+     */
+    private static String renderLists(Classification classification) {
+        if (classification.mustHaveElements.isEmpty() && classification.mustSupportElements.isEmpty()) {
+            return "";
         }
-        return parentExtensions;
+        StringBuilder output = RenderBuffer.acquire();
+        appendMarkdownList(output, THIS_MUST_HAVE_TAG, classification.mustHaveElements);
+        appendMarkdownList(output, THIS_MUST_SUPPORT_TAG, classification.mustSupportElements);
+        return output.toString();
     }
 
-    private static String processToMDOutput(String input, String mustHaveTag, String mustSupportTag) {
-        return input.replace("<ul>\n", "")
-                .replace("</ul>\n", "")
-                .replace("<li>", "")
-//                .replace("<li>", "* ")
-                .replace("</li>", "")
-                .replace("<b>" + mustHaveTag + "</b>\n", "**" + mustHaveTag + "**\n")
-                .replace("<b>" + mustSupportTag + "</b>\n", "**" + mustSupportTag + "**\n")
-//                .replace(beginTag + "\n", "")
-//                .replace(endTag, "")
-                .replace("|", "\\|")
-                .replace("</br>", "");
+    private static void appendMarkdownList(StringBuilder output, String tag, Set<String> elements) {
+        if (elements.isEmpty()) {
+            return;
+        }
+        output.append("**").append(tag).append("**\n");
+        int counter = 1;
+        for (String element : elements) {
+            output.append(counter)
+                    .append(". ");
+            MarkdownText.appendEscaped(output, element)
+                    .append("\n");
+            counter++;
+        }
+        output.append("\n");
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package com.icf.ecqm.structuredefinition.introgenerator.deqm;
+
+import com.icf.ecqm.structuredefinition.introgenerator.common.ElementRecord;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Segment-hash index of sliced parent elements ("extension:sliceName", "entry:sliceName").
+ * <p>
+ * An element is a child of a sliced parent when one of its inner id segments is a recorded slice segment, ie
+ * "MeasureReport.extension:dataLocation.url" sits under "extension:dataLocation". Checking that is one walk of the
+ * id with a hash lookup per segment, instead of a substring search of the id for every slice in the profile.
+ */
+class SlicedParentIndex {
+
+    private final Set<String> sliceSegments = new HashSet<>();
+
+    /**
+     * parent extension entries follow an id path ending in .extension:sliceName. Record these first, children
+     * are recognized later by containing that segment.
+     */
+    static SlicedParentIndex build(List<ElementRecord> elements, String[] parentTypes) {
+        SlicedParentIndex index = new SlicedParentIndex();
+        for (ElementRecord elementObj : elements) {
+            if (!elementObj.hasSliceName()) {
+                continue;
+            }
+            for (String parentType : parentTypes) {
+                String segment = parentType + ":" + elementObj.getSliceName();
+                if (elementObj.getId().endsWith("." + segment)) {
+                    index.sliceSegments.add(segment);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return the sliced parent segment the element sits under, or null if it isn't a child of one. The first segment
+     * (resource type) and the last (the element itself) are never parents.
+     */
+    String findSlicedParent(String elementId) {
+        if (sliceSegments.isEmpty()) {
+            return null;
+        }
+        int start = elementId.indexOf('.');
+        while (start != -1) {
+            int end = elementId.indexOf('.', start + 1);
+            if (end == -1) {
+                return null;
+            }
+            String segment = elementId.substring(start + 1, end);
+            if (sliceSegments.contains(segment)) {
+                return segment;
+            }
+            start = end;
+        }
+        return null;
+    }
+}
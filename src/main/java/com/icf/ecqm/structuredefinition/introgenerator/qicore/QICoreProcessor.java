@@ -1,35 +1,35 @@
 package com.icf.ecqm.structuredefinition.introgenerator.qicore;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.icf.ecqm.structuredefinition.introgenerator.common.AbstractProcessor;
+import com.icf.ecqm.structuredefinition.introgenerator.common.ElementIndex;
+import com.icf.ecqm.structuredefinition.introgenerator.common.ElementRecord;
+import com.icf.ecqm.structuredefinition.introgenerator.common.IntroData;
+import com.icf.ecqm.structuredefinition.introgenerator.common.Log;
+import com.icf.ecqm.structuredefinition.introgenerator.common.MarkdownText;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RenderBuffer;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RuleSet;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunOptions;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunSummary;
+import com.icf.ecqm.structuredefinition.introgenerator.common.StructureDefinitionRecord;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
-public class QICoreProcessor {
+/**
+ * QI-Core intro engine. Configure the rules once through the constructor (the built in qicore or qicore-ms
+ * {@link RuleSet}, or one read from a config); instances are immutable and can be shared across threads.
+ */
+public class QICoreProcessor extends AbstractProcessor<QICoreProcessor.Classification> {
 
-    private static final String SNAPSHOT = "snapshot";
-    private static final String ELEMENT = "element";
-    private static final String STRUCTURE_DEFINITION = "StructureDefinition";
-    private static final String ID = "id";
-    private static final String SHORT = "short";
-    private static final String MUST_SUPPORT = "mustSupport";
     private static final String introNotesFolder = "input" + File.separator + "intro-notes";
-    private static final String outputFolder = "output";
+    private static final String mdPageFile = "input/pages/qi-elements.md";
     private static final String beginTag = "<!--Begin Generated Intro Tag (DO NOT REMOVE)-->";
     private static final String endTag = "<!--End Generated Intro (DO NOT REMOVE)-->";
     private static final String mustHaveTag = "Must Have:";
     private static final String qiTag = "QI Elements:";
-    private static final String MIN = "min";
-    private static final String MAX = "max";
     private static final String PRIMARY_CODE_PATH = "Primary code path:";
     private static final String CODE_PATH_URL = "http://hl7.org/fhir/StructureDefinition/cqf-modelInfo-primaryCodePath";
-    private static final String KEY_ELEMENT_PATH_URL = "http://hl7.org/fhir/us/qicore/StructureDefinition/qicore-keyelement";
-    private static final String URL = "url";
-    private static final String EXTENSION = "extension";
-    private static final String VALUE_STRING = "valueString";
     private static final String PC_PATH_HREF = "<a href='https://cql.hl7.org/02-authorsguide.html#retrieve'>CQL Retrieve</a>";
     private static final String PC_PATH_MD_LINK = "[CQL Retrieve](https://cql.hl7.org/02-authorsguide.html#retrieve)";
 
@@ -37,14 +37,37 @@ public class QICoreProcessor {
 
     private static final String PAGE_DESCRIPTOR_HTML = "\"Must Have\", \"QI Elements\" and \"primary code path\" are defined in the <a href=\"index.html#mustsupport-flag\">QI-Core Must Support section</a>.<br></br>";
 
-    private static boolean MS_ARG = false;
+    private final RuleSet rules;
+    private final int mustHaveList;
+    private final int qiList;
 
-    public static void runTest() {
+    public QICoreProcessor() {
+        this(false);
+    }
+
+    /**
+     * @param msArg true to use the "-ms" QI rule (min 0 and mustSupport false) instead of the qicore-keyelement extension
+     */
+    public QICoreProcessor(boolean msArg) {
+        this(RuleSet.builtIn(msArg ? "qicore-ms" : "qicore"));
+    }
+
+    /**
+     * @param rules must have a "mustHave" and a "qiElements" list
+     */
+    public QICoreProcessor(RuleSet rules) {
+        int[] lists = rules.requireLists("mustHave", "qiElements");
+        this.rules = rules;
+        this.mustHaveList = lists[0];
+        this.qiList = lists[1];
+    }
+
+    public void runTest() {
         StringBuilder contentBuilder = new StringBuilder();
         // Read the input stream and convert it to a string
         try (InputStream inputStream = QICoreProcessor.class.getClassLoader().getResourceAsStream("StructureDefinition-qicore-adverseevent.json")) {
             assert inputStream != null;
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
                 String line;
                 while ((line = reader.readLine()) != null) {
                     contentBuilder.append(line).append(System.lineSeparator());
@@ -55,8 +78,8 @@ public class QICoreProcessor {
             throw new RuntimeException(e);
         }
 
-        System.out.println("File read successfully. Content length: " + contentBuilder.length());
-        System.out.println(buildStructureDefinitionIntro(contentBuilder.toString()));
+        Log.info("File read successfully. Content length: " + contentBuilder.length());
+        Log.info(buildStructureDefinitionIntro(contentBuilder.toString()));
     }
 
     /**
@@ -69,211 +92,68 @@ public class QICoreProcessor {
      * the IG before running the script will be necessary.
      *
      */
-    public static void runMain(boolean ms_arg) {
-        MS_ARG = ms_arg;
-        //cycle through all json structure defintion files in output folder:
-        File outputDir = new File(outputFolder);
-        File[] outputFiles = outputDir.listFiles((dir, name) -> name.toLowerCase().startsWith(STRUCTURE_DEFINITION.toLowerCase()) &&
-                name.toLowerCase().endsWith(".json"));
-
-        assert outputFiles != null;
-        if (outputFiles.length == 0) {
-            System.out.println("Output folder is empty!");
-            return;
-        } else {
-            Map<String, String> structureDefinitionIntroMap = new HashMap<>();
-            Map<String, String> mdMap = new HashMap<>();
-
-            for (File outputFile : outputFiles) {
-                System.out.println("\nProcessing " + outputFile.getAbsolutePath());
-
-                try {
-                    JsonObject outputJson = parseJsonFromFile(outputFile);
-
-                    String id = getIdFromJson(outputFile);
-
-                    String introNoteFileName = "StructureDefinition-" + id + "-intro.xml";
-
-                    String structureDefinitionIntro = buildStructureDefinitionIntro(outputJson.toString());
-
-                    String thisTitle = JsonParser.parseString(outputJson.toString()).getAsJsonObject().get("title").getAsString();
-                    String htmlFileName = "StructureDefinition-" + id + ".html";
-
-                    //key is title:htmlFileName (split later for titling on generated page.)
-                    mdMap.put(thisTitle + ":" + htmlFileName, structureDefinitionIntro);
-
-                    if (!structureDefinitionIntro.isEmpty()) {
-                        System.out.println("Intro generated: " + introNoteFileName + ": \n" + structureDefinitionIntro);
-                        structureDefinitionIntroMap.put(introNoteFileName, structureDefinitionIntro);
-                    } else {
-                        System.out.println("No intro generated (no elements pass criteria): " + introNoteFileName + ": \n" + structureDefinitionIntro);
-                    }
-
-
-                } catch (Exception e) {
-                    System.err.println("Error processing file: " + outputFile.getName());
-                    e.printStackTrace();
-                }
-            }
-
-
-            //create our collection md file:
-            try {
-                outputMDMapToFile(mdMap);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-
-
-            File inputDir = new File(introNotesFolder);
-
-            File[] inputFiles = inputDir.listFiles((dir, name) -> name.endsWith("-intro.xml"));
-
-            Set<String> introFilesNotFound = new HashSet<>(structureDefinitionIntroMap.keySet());
-            System.out.println(String.join(", ", introFilesNotFound));
-
-            if (inputFiles != null) {
-                //build list of missing files for later
-                for (File file : inputFiles) {
-                    introFilesNotFound.remove(file.getName());
-                }
-                //attempt to write generated intro to corresponding file:
-                for (File inputFile : inputFiles) {
-                    writeToFile(structureDefinitionIntroMap, inputFile.getName(), false);
-                }
-            }
-
-            //some intro files weren't found in the directory so we ask user if we should create them:
-            if (!introFilesNotFound.isEmpty()) {
-                String ask = "\nSome intro files were missing: " + String.join(", ", introFilesNotFound) + "\n\nWould you like to create these files now? (y/n): ";
-                System.out.println(ask);
-
-                Scanner scanner = new Scanner(System.in);
-                String response = scanner.nextLine().trim().toLowerCase();
-
-                while (!response.equals("y") && !response.equals("n")) {
-                    System.out.print(ask);
-                    response = scanner.nextLine().trim().toLowerCase();
-                }
-
-                if (response.equals("y")) {
-                    System.out.println("Creating files...");
-                    for (String introFileName : introFilesNotFound) {
-
-                        writeToFile(structureDefinitionIntroMap, introFileName, true);
-                    }
-                }
-
-                scanner.close(); // Close the scanner
-            }
-            System.out.println("\n");
-        }
-
-        System.out.println("File modification is done. Generating the IG should show updated element list in files above.");
-
+    public RunSummary runMain() {
+        return runMain(new RunOptions());
     }
 
-    private static void writeToFile(Map<String, String> structureDefinitionIntroMap, String introFileName, boolean createFile) {
-        try {
-
-            if (!structureDefinitionIntroMap.containsKey(introFileName)) {
-                System.out.println(introFileName + " not mapped.");
-                return;
-            }
-            String injectableIntroBody = structureDefinitionIntroMap.get(introFileName);
-
-            if (injectableIntroBody == null || injectableIntroBody.isEmpty()) return;
-            File introFile = new File(introNotesFolder + File.separator + introFileName);
-            if (createFile) {
-                if (introFile.createNewFile()) {
-                    System.out.println("File created: " + introFile.getName());
-                } else {
-                    System.out.println("File already exists: " + introFile.getName());
-                    return;
-                }
-            }
-            BufferedReader reader = new BufferedReader(new FileReader(introFile));
-            StringBuilder content = buildContent(reader, injectableIntroBody);
-
-            reader.close();
-
-            BufferedWriter writer = new BufferedWriter(new FileWriter(introFile));
-            writer.write(content.toString());
-            writer.close();
-
-            System.out.println("Injectable intro body added to: " + introFile.getName());
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.out.println("Error creating file: " + introFileName);
-        }
+    @Override
+    protected String getIntroFolder() {
+        return introNotesFolder;
     }
 
-    /**
-     * Turns map into string:
-     * *[key](key.html)**
-     * Must Have:
-     * musthave entry
-     * QI Elements:
-     * qi entry
-     *
-     * @param mdMap
-     */
-    private static void outputMDMapToFile(Map<String, String> mdMap) throws IOException {
-        StringBuilder mdPageBuilder = new StringBuilder();
+    @Override
+    protected boolean isIntroFile(String name) {
+        return name.endsWith("-intro.xml");
+    }
 
-        List<String> sortableKeyList = new ArrayList<>(mdMap.keySet());
-        Collections.sort(sortableKeyList);
+    @Override
+    protected String getPageFile() {
+        return mdPageFile;
+    }
 
-        for (String key : sortableKeyList) {
-            if (mdMap.get(key).isEmpty()) continue;
+    @Override
+    protected String getNewLine() {
+        return "\n";
+    }
 
-            if (!mdMap.get(key).contains(mustHaveTag)
-                    && !mdMap.get(key).contains(qiTag)) {
-                continue;
-            }
+    @Override
+    protected String getMissingFilesQuestion(Collection<String> introFileNames) {
+        return "\nSome intro files were missing: " + String.join(", ", introFileNames) + "\n\nWould you like to create these files now? (y/n): ";
+    }
 
-            String pageContent = mdMap.get(key)
-                    .replace(PAGE_DESCRIPTOR_HTML, "")
-                    .replace("<ul>\n", "")
-                    .replace("</ul>\n", "")
-                    .replace("<li>", "* ")
-                    .replace("</li>", "")
-                    .replace("<b>" + mustHaveTag + "</b>\n", "**" + mustHaveTag + "**\n")
-                    .replace("<b>" + qiTag + "</b>\n", "**" + qiTag + "**\n")
-                    .replace(PC_PATH_HREF + "\n<br></br>\n<br></br>", PC_PATH_HREF + "\n<br></br>")
-                    .replace("<b>" + PRIMARY_CODE_PATH + "</b>", "**" + PRIMARY_CODE_PATH + "**")
-                    .replace(PC_PATH_HREF, PC_PATH_MD_LINK)
-                    .replace(beginTag + "\n", "")
-                    .replace(endTag, "")
-                    .replace("|", "\\|")
-                    .replace("</br>", "");
-
-            if (pageContent.contains(mustHaveTag)) {
-                pageContent = pageContent.replace("**" + qiTag + "**\n", "\n**" + qiTag + "**\n");
-            }
+    @Override
+    public String getRuleKey() {
+        return rules.getKey();
+    }
 
-            String title = key.split(":")[0];
-            String fileName = key.split(":")[1];
+    @Override
+    protected String getIntroFileSuffix() {
+        return "-intro.xml";
+    }
 
-            mdPageBuilder.append("### [")
-                    .append(title)
-                    .append("](")
-                    .append(fileName)
-                    .append(") ###\n");
+    @Override
+    protected String getPageHeader() {
+        return PAGE_DESCRIPTOR_MD + "\n\n";
+    }
 
-            mdPageBuilder.append(pageContent)
-                    .append("<br>\n<br>\n\n");
+    @Override
+    protected String renderIntro(Classification classification, String pageEntry) {
+        return render(classification);
+    }
 
-        }
+    @Override
+    protected void addData(IntroData data, Classification classification) {
+        data.addList("mustHave", classification.mustHaveElements)
+                .addList("qiElements", classification.qiElements)
+                .setPrimaryCodePath(classification.primaryCodePath);
+    }
 
-        if (mdPageBuilder.length() > 0) {
-            BufferedWriter writer = new BufferedWriter(new FileWriter("input/pages/qi-elements.md"));
-            writer.write(PAGE_DESCRIPTOR_MD + "\n\n" + mdPageBuilder.toString());
-            writer.close();
-        }
+    @Override
+    protected StringBuilder spliceIntro(BufferedReader existingContent, String intro) throws IOException {
+        return buildContent(existingContent, intro);
     }
 
-    private static StringBuilder buildContent(BufferedReader reader, String injectableIntroBody) throws IOException {
+    static StringBuilder buildContent(BufferedReader reader, String injectableIntroBody) throws IOException {
         StringBuilder content = new StringBuilder();
         String line;
         boolean skipLines = false;
@@ -312,28 +192,6 @@ public class QICoreProcessor {
         return content;
     }
 
-    private static String buildIntroFileNameFromJsonName(String name) {
-        return name.replace(".json", "-intro.xml");
-    }
-
-
-    private static String getIdFromJson(File file) throws Exception {
-        JsonObject jsonData = parseJsonFromFile(file);
-        return jsonData.get(ID).getAsString();
-    }
-
-
-    private static JsonObject parseJsonFromFile(File file) throws Exception {
-        try (Reader reader = new FileReader(file)) {
-            return JsonParser.parseReader(reader).getAsJsonObject();
-        }
-    }
-
-
-    private static Set<String> set_mustHaveParentElements = new HashSet<>();
-    private static Set<String> set_qiParentElements = new HashSet<>();
-
-
     /**
      * https://jira.hl7.org/browse/FHIR-46030
      * <p>
@@ -354,217 +212,164 @@ public class QICoreProcessor {
      * (PCPath) This element is the primary code path for this resource [CQL Retrieve](https://cql.hl7.org/02-authorsguide.html#filtering-with-terminology)
      *
      * Update 3/3/25: Only child elements will be considered if their parent element passed condition for mustHave or QI list
+     * (at any depth: a grandchild needs its own parent, not just the top level element, to have passed)
      */
-    public static String buildStructureDefinitionIntro(String jsonString) {
-        JsonObject root = JsonParser.parseString(jsonString).getAsJsonObject();
-
-        //Primary Code Path:
-        String primaryCodePath = "";
-        if (root.has(EXTENSION)) {
-            JsonArray extensions = root.getAsJsonArray(EXTENSION);
-            for (JsonElement extElement : extensions) {
-
-                JsonObject extObj = extElement.getAsJsonObject();
-
-                if (extObj.has(URL) && extObj.get(URL).getAsString().equals(CODE_PATH_URL)) {
-                    if (extObj.has(VALUE_STRING)) {
-                        primaryCodePath = extObj.get(VALUE_STRING).getAsString();
-                        break;
-                    }
-                }
-            }
-        }
-
-        Set<String> mustHaveElements = new HashSet<>();
-        Set<String> qiElements = new HashSet<>();
+    @Override
+    public String buildStructureDefinitionIntro(StructureDefinitionRecord structureDefinition) {
+        return render(classify(structureDefinition));
+    }
 
-        //Parent Elements only:
-        {
-            JsonArray elements = root.getAsJsonObject(SNAPSHOT).getAsJsonArray(ELEMENT);
-            for (JsonElement element : elements) {
-                JsonObject elementObj = element.getAsJsonObject();
+    /**
+     * The profile's entry on the qi-elements page.
+     */
+    String buildMDEntry(StructureDefinitionRecord structureDefinition) {
+        return renderPageEntry(classify(structureDefinition));
+    }
 
-                String elementId = elementObj.get("id").getAsString();
-                String[] elementNameParts = elementId.split("\\.");
-                boolean isParent = elementNameParts.length == 2 && !elementId.contains(":");
-                if (!isParent) {
-                    continue;
-                }
+    /**
+     * The elements that passed each list, and the primary code path ("" for none).
+     */
+    static class Classification {
+        private final Set<String> mustHaveElements = new HashSet<>();
+        private final Set<String> qiElements = new HashSet<>();
+        private String primaryCodePath;
+    }
 
-                String elementName = elementObj.get("path").getAsString();
+    @Override
+    protected Classification classify(StructureDefinitionRecord structureDefinition) {
+        Classification classification = new Classification();
+        Set<String> mustHaveElements = classification.mustHaveElements;
+        Set<String> qiElements = classification.qiElements;
 
-                String id = elementObj.get("id").getAsString();
-                if (!elementName.equals(id) && id.contains(elementName)) {
-                    //if path ends in ".extension" use sliceName
-                    elementName = stripPathToLastEntry(elementName) + "(" + elementObj.get("sliceName").getAsString() + ")";
-                } else if (elementObj.get("path").getAsString().endsWith(".extension") && elementObj.has("sliceName")) {
-                    elementName = elementObj.get("sliceName").getAsString();
-                } else {
-                    elementName = stripPathToLastEntry(elementName);
-                }
-                String shortDesc = elementObj.has(SHORT) ? elementObj.get(SHORT).getAsString()
-                        .replace("(QI-Core)", "")
-                        .replace("(USCDI)", "")
-                        .replace("  ", " ")
-                        :
-                        "";
-                boolean isMustHave = false;
-                if (elementObj.has(MIN) && elementObj.has(MAX)) {
-                    int min = elementObj.get(MIN).getAsInt();
-                    String max = elementObj.get(MAX).getAsString();
-                    if (min == 1 && (max.equals("1") || max.equals("*"))) {
-                        if (elementObj.has(MUST_SUPPORT) && elementObj.get(MUST_SUPPORT).getAsBoolean()) {
-                            isMustHave = true;
-                        }
-                    }
-                }
-                if (isMustHave) {
-                    set_mustHaveParentElements.add(elementId);
-                    mustHaveElements.add(elementName + ": " + shortDesc);
-                } else {
-                    //QI rule: look for key element path url for one version, look for min = 0 and mustSupport = false in other version
-                    //delegated by arg -ms at runtime:
-                    if (MS_ARG) {
-                        if (elementObj.has(MIN) && elementObj.get(MIN).getAsString().equals("0")) {
-                            if (elementObj.has(MUST_SUPPORT) && !elementObj.get(MUST_SUPPORT).getAsBoolean()) {
-                                set_qiParentElements.add(elementId);
-                                qiElements.add(elementName + ": " + shortDesc);
-                            }
-                        }
-                    } else {
-                        if (elementObj.has(EXTENSION)) {
-                            JsonArray extensions = elementObj.getAsJsonArray(EXTENSION);
-                            for (JsonElement extElement : extensions) {
-                                JsonObject extObj = extElement.getAsJsonObject();
-                                if (extObj.has(URL) && extObj.get(URL).getAsString().equals(KEY_ELEMENT_PATH_URL)) {
-                                    set_qiParentElements.add(elementId);
-                                    qiElements.add(elementName + ": " + shortDesc);
-                                }
-                            }
-                        }
-                    }
-                }
+        //Primary Code Path:
+        String primaryCodePath = structureDefinition.getExtensionValueString(CODE_PATH_URL);
+        if (primaryCodePath == null) {
+            primaryCodePath = "";
+        }
+        classification.primaryCodePath = primaryCodePath;
+
+        //Single pass in snapshot order. Parents always precede their children in a snapshot, so every element is checked
+        //against an ancestor that is already classified (children only considered if their parent passed the same list):
+        ElementIndex index = new ElementIndex();
+        for (ElementRecord elementObj : structureDefinition.getSnapshotElements()) {
+            ElementIndex.Node node = index.add(elementObj);
+
+            String elementName = buildElementName(elementObj);
+            String shortDesc = elementObj.getShort() != null ? elementObj.getShort()
+                    .replace("(QI-Core)", "")
+                    .replace("(USCDI)", "")
+                    .replace("  ", " ")
+                    :
+                    "";
+
+            int list = rules.classify(elementObj, node);
+            if (list == mustHaveList) {
+                mustHaveElements.add(elementName + ": " + shortDesc);
+            } else if (list == qiList) {
+                qiElements.add(elementName + ": " + shortDesc);
             }
         }
+        return classification;
+    }
 
+    private static String render(Classification classification) {
+        StringBuilder output = RenderBuffer.acquire();
+        output.append(beginTag).append("\n").append(PAGE_DESCRIPTOR_HTML).append("\n\n");
+        int sectionsStart = output.length();
 
-        //Child elements only (will check set_ for parent presence before continuing. If parent not present in set, don't add)
-        {
-            JsonArray elements = root.getAsJsonObject(SNAPSHOT).getAsJsonArray(ELEMENT);
-            for (JsonElement element : elements) {
-                JsonObject elementObj = element.getAsJsonObject();
-
-                String elementId = elementObj.get("id").getAsString();
-                String[] elementNameParts = elementId.split("\\.");
-                boolean isParent = elementNameParts.length == 2 && !elementId.contains(":");
-                if (isParent) {
-                    continue;
-                }
-
-                String elementName = elementObj.get("path").getAsString();
-
-
-                String id = elementObj.get("id").getAsString();
-                if (!elementName.equals(id) && id.contains(elementName)) {
-                    //if path ends in ".extension" use sliceName
-                    elementName = stripPathToLastEntry(elementName) + "(" + elementObj.get("sliceName").getAsString() + ")";
-                } else if (elementObj.get("path").getAsString().endsWith(".extension") && elementObj.has("sliceName")) {
-                    elementName = elementObj.get("sliceName").getAsString();
-                } else {
-                    elementName = stripPathToLastEntry(elementName);
-                }
+        appendHtmlList(output, mustHaveTag, classification.mustHaveElements);
+        appendHtmlList(output, qiTag, classification.qiElements);
 
-                String parentElementName = "";
-                if (elementId.contains(".") && !elementId.contains(":")) {
-                    parentElementName = elementName.split("\\.")[0] + "." + elementName.split("\\.")[1];
-                }
+        String primaryCodePath = classification.primaryCodePath;
+        if (!primaryCodePath.isEmpty()) {
+            output.append("<b>" + PRIMARY_CODE_PATH + "</b> ")
+                    .append(primaryCodePath)
+                    .append("\n")
+                    .append("<br></br>\n(PCPath) This element is the primary code path for this resource " + PC_PATH_HREF + "\n<br></br>\n<br></br>")
+                    .append("\n\n");
+        }
 
-                String shortDesc = elementObj.has(SHORT) ? elementObj.get(SHORT).getAsString()
-                        .replace("(QI-Core)", "")
-                        .replace("(USCDI)", "")
-                        .replace("  ", " ")
-                        :
-                        "";
-                boolean isMustHave = false;
-                //parent is in mustHave list, so child can be considered:
-                if (parentElementName.isEmpty() || set_mustHaveParentElements.contains(parentElementName)) {
-                    if (elementObj.has(MIN) && elementObj.has(MAX)) {
-                        int min = elementObj.get(MIN).getAsInt();
-                        String max = elementObj.get(MAX).getAsString();
-                        if (min == 1 && (max.equals("1") || max.equals("*"))) {
-                            if (elementObj.has(MUST_SUPPORT) && elementObj.get(MUST_SUPPORT).getAsBoolean()) {
-                                isMustHave = true;
-                            }
-                        }
-                    }
-                }
-                if (isMustHave) {
-                    mustHaveElements.add(elementName + ": " + shortDesc);
-                } else {
-                    //only consider child element for qi list if parent element is in qi list
-                    if (parentElementName.isEmpty() || set_qiParentElements.contains(parentElementName)) {
-                        //QI rule: look for key element path url for one version, look for min = 0 and mustSupport = false in other version
-                        //delegated by arg -ms at runtime:
-                        if (MS_ARG) {
-                            if (elementObj.has(MIN) && elementObj.get(MIN).getAsString().equals("0")) {
-                                if (elementObj.has(MUST_SUPPORT) && !elementObj.get(MUST_SUPPORT).getAsBoolean()) {
-                                    set_qiParentElements.add(elementName);
-                                    qiElements.add(elementName + ": " + shortDesc);
-                                }
-                            }
-                        } else {
-                            if (elementObj.has(EXTENSION)) {
-                                JsonArray extensions = elementObj.getAsJsonArray(EXTENSION);
-                                for (JsonElement extElement : extensions) {
-                                    JsonObject extObj = extElement.getAsJsonObject();
-                                    if (extObj.has(URL) && extObj.get(URL).getAsString().equals(KEY_ELEMENT_PATH_URL)) {
-                                        set_qiParentElements.add(elementName);
-                                        qiElements.add(elementName + ": " + shortDesc);
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
+        if (output.length() == sectionsStart) {
+            return "";
         }
+        return output.append(endTag).toString();
+    }
 
-        StringBuilder output = new StringBuilder();
-        if (!mustHaveElements.isEmpty()) {
-            output.append("<b>" + mustHaveTag + "</b>\n")
-                    .append("<ul>\n");
-            for (String element : mustHaveElements) {
-                output.append("<li>").append(element).append("</li>\n");
-            }
-            output.append("</ul>")
-                    .append("\n\n");
+    private static void appendHtmlList(StringBuilder output, String tag, Set<String> elements) {
+        if (elements.isEmpty()) {
+            return;
         }
+        output.append("<b>").append(tag).append("</b>\n")
+                .append("<ul>\n");
+        for (String element : elements) {
+            output.append("<li>").append(element).append("</li>\n");
+        }
+        output.append("</ul>")
+                .append("\n\n");
+    }
 
-        if (!qiElements.isEmpty()) {
-            output.append("<b>" + qiTag + "</b>\n")
-                    .append("<ul>\n");
-            for (String element : qiElements) {
-                output.append("<li>").append(element).append("</li>\n");
-            }
-            output.append("</ul>")
-                    .append("\n\n");
+    /**
+     * The profile's entry on the qi-elements page, rendered from the same lists as the intro: empty for an empty intro
+     * or one without lists, otherwise the lists as Markdown bullets followed by the primary code path, with '|' in
+     * element texts and the code path escaped.
+     */
+    @Override
+    protected String renderPageEntry(Classification classification) {
+        Set<String> mustHaveElements = classification.mustHaveElements;
+        Set<String> qiElements = classification.qiElements;
+        String primaryCodePath = classification.primaryCodePath;
+
+        //the page only lists intros that mention either list
+        if (mustHaveElements.isEmpty() && qiElements.isEmpty()
+                && !primaryCodePath.contains(mustHaveTag) && !primaryCodePath.contains(qiTag)) {
+            return "";
         }
 
+        StringBuilder output = RenderBuffer.acquire();
+        output.append("\n\n");
+        appendMarkdownList(output, mustHaveTag, mustHaveElements);
+        //QI Elements get a blank line above them when they follow Must Have
+        if (!mustHaveElements.isEmpty() && !qiElements.isEmpty()) {
+            output.append("\n");
+        }
+        appendMarkdownList(output, qiTag, qiElements);
 
         if (!primaryCodePath.isEmpty()) {
-            output.append("<b>" + PRIMARY_CODE_PATH + "</b> ")
-                    .append(primaryCodePath)
-                    .append("\n")
-                    .append("<br></br>\n(PCPath) This element is the primary code path for this resource " + PC_PATH_HREF + "\n<br></br>\n<br></br>")
-                    .append("\n\n");
+            output.append("**" + PRIMARY_CODE_PATH + "** ");
+            MarkdownText.appendEscaped(output, primaryCodePath)
+                    .append("\n<br>\n(PCPath) This element is the primary code path for this resource " + PC_PATH_MD_LINK + "\n<br>\n\n");
         }
+        return output.toString();
+    }
 
+    private static void appendMarkdownList(StringBuilder output, String tag, Set<String> elements) {
+        if (elements.isEmpty()) {
+            return;
+        }
+        output.append("**").append(tag).append("**\n");
+        for (String element : elements) {
+            MarkdownText.appendEscaped(output.append("* "), element).append("\n");
+        }
+        output.append("\n");
+    }
 
-        if (output.length() > 0) {
-            return beginTag + "\n" + PAGE_DESCRIPTOR_HTML + "\n\n" + output + endTag;
-        } else {
-            return "";
+    private static String buildElementName(ElementRecord elementObj) {
+        String elementName = elementObj.getPath();
+        String id = elementObj.getId();
+        if (!elementName.equals(id) && id.contains(elementName)) {
+            //if path ends in ".extension" use sliceName
+            return stripPathToLastEntry(elementName) + "(" + requireSliceName(elementObj) + ")";
+        } else if (elementName.endsWith(".extension") && elementObj.hasSliceName()) {
+            return elementObj.getSliceName();
+        }
+        return stripPathToLastEntry(elementName);
+    }
+
+    private static String requireSliceName(ElementRecord elementObj) {
+        if (!elementObj.hasSliceName()) {
+            throw new IllegalStateException("Element " + elementObj.getId() + " is sliced but has no sliceName");
         }
+        return elementObj.getSliceName();
     }
 
     private static String stripPathToLastEntry(String elementName) {
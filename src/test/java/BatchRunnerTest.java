@@ -0,0 +1,69 @@
+import com.icf.ecqm.structuredefinition.introgenerator.BatchRunner;
+import com.icf.ecqm.structuredefinition.introgenerator.IgType;
+import com.icf.ecqm.structuredefinition.introgenerator.common.MissingFilePolicy;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunOptions;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunSummary;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchRunnerTest {
+
+    @Test
+    void testRootsAreProcessedWithExplicitPaths(@TempDir Path tempDir) throws Exception {
+        Path qicoreRoot = createIg(tempDir.resolve("fhir-qi-core"));
+        Path deqmRoot = createIg(tempDir.resolve("davinci-deqm"));
+        Path rootsFile = Files.writeString(tempDir.resolve("roots.txt"),
+                "# nightly IGs\nqicore fhir-qi-core\n\ndeqm " + deqmRoot + "\n");
+
+        List<BatchRunner.IgRoot> roots = BatchRunner.readRootsFile(rootsFile.toFile());
+        assertEquals(2, roots.size());
+        assertEquals(IgType.QICORE, roots.get(0).getType());
+        assertEquals(qicoreRoot.toFile().getAbsoluteFile(), roots.get(0).getDirectory().getAbsoluteFile());
+
+        BatchRunner batch = new BatchRunner(roots);
+        RunSummary total = batch.run(new RunOptions().setThreads(2).setMissingFilePolicy(MissingFilePolicy.CREATE));
+
+        assertEquals(0, total.getErrors());
+        assertEquals(4, total.getProcessed());
+        assertEquals(2, batch.getSummaries().size());
+        for (RunSummary summary : batch.getSummaries().values()) {
+            assertEquals(2, summary.getProcessed());
+        }
+
+        //everything lands under its own root:
+        assertTrue(Files.isRegularFile(qicoreRoot.resolve("input/intro-notes/StructureDefinition-qicore-patient-intro.xml")));
+        assertTrue(Files.isRegularFile(qicoreRoot.resolve("input/pages/qi-elements.md")));
+        assertTrue(Files.isRegularFile(deqmRoot.resolve("input/pagecontent/StructureDefinition-qicore-patient-intro.md")));
+        assertTrue(Files.isRegularFile(deqmRoot.resolve("musthave-qi-list.md")));
+        assertTrue(batch.toJson().contains("\"roots\""));
+    }
+
+    @Test
+    void testRootSpecParsing() {
+        BatchRunner.IgRoot root = BatchRunner.IgRoot.parse("qicore-ms=../fhir-qi-core");
+        assertEquals(IgType.QICORE_MS, root.getType());
+        assertEquals("../fhir-qi-core", root.getDirectory().getPath());
+        assertThrows(IllegalArgumentException.class, () -> BatchRunner.IgRoot.parse("../fhir-qi-core"));
+        assertThrows(IllegalArgumentException.class, () -> BatchRunner.IgRoot.parse("us-core=../us-core"));
+    }
+
+    private Path createIg(Path root) throws Exception {
+        Files.createDirectories(root.resolve("output"));
+        Files.createDirectories(root.resolve("input/intro-notes"));
+        Files.createDirectories(root.resolve("input/pagecontent"));
+        Files.createDirectories(root.resolve("input/pages"));
+        for (String resource : new String[]{"StructureDefinition-qicore-adverseevent.json", "StructureDefinition-qicore-patient.json"}) {
+            try (InputStream in = getClass().getClassLoader().getResourceAsStream(resource)) {
+                Files.copy(in, root.resolve("output").resolve(resource));
+            }
+        }
+        return root;
+    }
+}
@@ -1,9 +1,30 @@
 import com.icf.ecqm.structuredefinition.introgenerator.deqm.DEQMProcessor;
+import com.google.gson.JsonParser;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunOptions;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunSummary;
+import com.icf.ecqm.structuredefinition.introgenerator.common.StreamingSnapshotExtractor;
+import com.icf.ecqm.structuredefinition.introgenerator.common.StructureDefinitionRecord;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 
 class DEQMProcessorTest {
 
@@ -31,11 +52,11 @@ class DEQMProcessorTest {
 
         // Verify Must-Have Section
         assertTrue(output.contains("Each {{site.data.structuredefinitions.[id].type}} Must Have:"));
-        assertTrue(output.contains("Observation.status: Status"));
+        assertTrue(output.contains("status: Status"));
 
         // Verify Must-Support Section
         assertTrue(output.contains("Each {{site.data.structuredefinitions.[id].type}} Must Support:"));
-        assertTrue(output.contains("Observation.value: Value"));
+        assertTrue(output.contains("value: Value"));
     }
 
     @Test
@@ -49,4 +70,86 @@ class DEQMProcessorTest {
         String output = processor.buildStructureDefinitionIntro(jsonInput);
         assertEquals("", output);
     }
+
+    @Test
+    void testOutputFileIsOpenedAndParsedOnce(@TempDir Path tempDir) throws Exception {
+        String jsonInput = "{"
+                + "\"id\": \"test-deqm\","
+                + "\"title\": \"DEQM Test\","
+                + "\"type\": \"Observation\","
+                + "\"snapshot\": {"
+                + "  \"element\": ["
+                + "    { \"id\": \"Observation.status\", \"path\": \"Observation.status\", \"short\": \"Status\", \"min\": 1, \"max\": \"1\", \"mustSupport\": true }"
+                + "  ]"
+                + "}"
+                + "}";
+        Path outputFile = Files.createDirectories(tempDir.resolve("output")).resolve("StructureDefinition-test-deqm.json");
+        Files.writeString(outputFile, jsonInput);
+        Path introFile = Files.createDirectories(tempDir.resolve("input/pagecontent")).resolve("StructureDefinition-test-deqm-intro.md");
+        Files.writeString(introFile, "## Intro\n");
+        RunOptions options = new RunOptions().setRoot(tempDir.toFile()).setThreads(1);
+        RunSummary summary;
+
+        //counts the opens of the profile itself (not the overload open(path, options...) delegates to); every call still
+        //goes to the real FileChannel:
+        AtomicInteger opens = new AtomicInteger();
+        AtomicInteger depth = new AtomicInteger();
+        try (MockedStatic<JsonParser> parser = Mockito.mockStatic(JsonParser.class, Mockito.CALLS_REAL_METHODS);
+             MockedStatic<FileChannel> channels = Mockito.mockStatic(FileChannel.class, invocation -> {
+                 if (invocation.getMethod().getName().equals("open") && outputFile.equals(invocation.getArgument(0))
+                         && depth.get() == 0) {
+                     opens.incrementAndGet();
+                 }
+                 depth.incrementAndGet();
+                 try {
+                     return invocation.callRealMethod();
+                 } finally {
+                     depth.decrementAndGet();
+                 }
+             })) {
+            summary = processor.runFiles(options, new File[]{outputFile.toFile()});
+
+            parser.verify(() -> JsonParser.parseReader(any(Reader.class)), times(1));
+            parser.verify(() -> JsonParser.parseString(anyString()), never());
+        }
+        assertEquals(1, opens.get());
+
+        assertEquals(1, summary.getWritten());
+        assertTrue(Files.readString(introFile).contains("status: Status"));
+    }
+
+    @Test
+    void testOnlyPipesAreEscaped() {
+        String jsonInput = "{"
+                + "\"id\": \"test-markup\","
+                + "\"snapshot\": {"
+                + "  \"element\": ["
+                + "    { \"id\": \"Observation.status\", \"path\": \"Observation.status\", \"short\": \"<ul> registered | final\", \"min\": 1, \"max\": \"1\" },"
+                + "    { \"id\": \"Observation.note\", \"path\": \"Observation.note\", \"short\": \"**two**\\nlines\", \"min\": 1, \"max\": \"1\" }"
+                + "  ]"
+                + "}"
+                + "}";
+
+        String output = processor.buildStructureDefinitionIntro(jsonInput);
+
+        assertTrue(output.contains(". status: <ul> registered \\| final\n"), output);
+        assertTrue(output.contains(". note: **two**\nlines\n"), output);
+    }
+
+    @Test
+    void testStreamingExtractionMatchesTreeParsing() throws Exception {
+        for (String resource : new String[]{"StructureDefinition-qicore-adverseevent.json", "StructureDefinition-qicore-patient.json"}) {
+            String treeIntro;
+            try (Reader reader = new InputStreamReader(getClass().getClassLoader().getResourceAsStream(resource), StandardCharsets.UTF_8)) {
+                treeIntro = processor.buildStructureDefinitionIntro(JsonParser.parseReader(reader).getAsJsonObject());
+            }
+            StructureDefinitionRecord streamed;
+            try (Reader reader = new InputStreamReader(getClass().getClassLoader().getResourceAsStream(resource), StandardCharsets.UTF_8)) {
+                streamed = StreamingSnapshotExtractor.extract(reader);
+            }
+
+            assertTrue(streamed.getTitle() != null && !streamed.getSnapshotElements().isEmpty());
+            assertEquals(treeIntro, processor.buildStructureDefinitionIntro(streamed), resource);
+        }
+    }
 }
@@ -0,0 +1,72 @@
+import com.icf.ecqm.structuredefinition.introgenerator.common.ElementRecord;
+import com.icf.ecqm.structuredefinition.introgenerator.common.StructureDefinitionRecord;
+import com.icf.ecqm.structuredefinition.introgenerator.deqm.DEQMProcessor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Synthetic DEQM Bundle with thousands of entry and extension slices, each with children. Looking up whether an
+ * element sits under a sliced parent used to scan every slice for every element (quadratic); this reports how long
+ * the whole intro takes at a few sizes and checks the children are still skipped.
+ */
+class DEQMSliceBenchmarkTest {
+
+    private static final int[] SLICE_COUNTS = {100, 1000, 5000};
+    private static final int ITERATIONS = 5;
+
+    @Test
+    void benchmarkHeavilySlicedProfile() {
+        DEQMProcessor processor = new DEQMProcessor();
+
+        for (int sliceCount : SLICE_COUNTS) {
+            StructureDefinitionRecord profile = buildSlicedBundle(sliceCount);
+
+            String output = processor.buildStructureDefinitionIntro(profile);
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                output = processor.buildStructureDefinitionIntro(profile);
+            }
+            long averageMicros = (System.nanoTime() - start) / ITERATIONS / 1000;
+
+            System.out.println("DEQM sliced profile: " + sliceCount + " slices, " + profile.getSnapshotElements().size()
+                    + " elements: " + averageMicros + " us/intro");
+
+            assertTrue(output.contains("entry: Entry slice " + (sliceCount - 1)));
+            assertTrue(output.contains("ext" + (sliceCount - 1) + ": Extension slice " + (sliceCount - 1)));
+            assertFalse(output.contains("Slice child"));
+        }
+    }
+
+    private static StructureDefinitionRecord buildSlicedBundle(int sliceCount) {
+        List<ElementRecord> elements = new ArrayList<>();
+        elements.add(element("Bundle", null, "Bundle", 0, "*", null));
+        elements.add(element("Bundle.extension", null, "Extension", 0, "*", null));
+        for (int i = 0; i < sliceCount; i++) {
+            String slice = "ext" + i;
+            elements.add(element("Bundle.extension:" + slice, slice, "Extension slice " + i, 0, "1", true));
+            elements.add(element("Bundle.extension:" + slice + ".url", null, "Slice child url", 1, "1", true));
+            elements.add(element("Bundle.extension:" + slice + ".value[x]", null, "Slice child value", 1, "1", true));
+        }
+        elements.add(element("Bundle.type", null, "Type", 1, "1", true));
+        elements.add(element("Bundle.entry", null, "Entry", 0, "*", true));
+        for (int i = 0; i < sliceCount; i++) {
+            String slice = "slice" + i;
+            elements.add(element("Bundle.entry:" + slice, slice, "Entry slice " + i, 1, "1", true));
+            elements.add(element("Bundle.entry:" + slice + ".fullUrl", null, "Slice child fullUrl", 1, "1", true));
+            elements.add(element("Bundle.entry:" + slice + ".resource", null, "Slice child resource", 1, "1", true));
+            elements.add(element("Bundle.entry:" + slice + ".resource.id", null, "Slice child resource id", 0, "1", true));
+        }
+        return new StructureDefinitionRecord("synthetic-sliced-bundle", "Synthetic Sliced Bundle", Collections.emptyMap(), elements);
+    }
+
+    private static ElementRecord element(String id, String sliceName, String shortDesc, int min, String max, Boolean mustSupport) {
+        String path = id.replaceAll(":[^.]*", "");
+        return new ElementRecord(id, path, sliceName, shortDesc, min, max, mustSupport, null);
+    }
+}
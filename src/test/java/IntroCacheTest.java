@@ -0,0 +1,85 @@
+import com.icf.ecqm.structuredefinition.introgenerator.common.IntroCache;
+import com.icf.ecqm.structuredefinition.introgenerator.common.ProfileResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IntroCacheTest {
+
+    @Test
+    void testUnchangedProfilesAreServedFromCache(@TempDir Path tempDir) throws Exception {
+        File cacheFile = tempDir.resolve("cache.json").toFile();
+        File first = tempDir.resolve("StructureDefinition-first.json").toFile();
+        File second = tempDir.resolve("StructureDefinition-second.json").toFile();
+        Files.writeString(first.toPath(), "{\"id\": \"first\"}");
+        Files.writeString(second.toPath(), "{\"id\": \"second\"}");
+
+        AtomicInteger builds = new AtomicInteger();
+
+        IntroCache cache = IntroCache.load(cacheFile, "qicore");
+        cache.get(first, file -> build(file, builds));
+        cache.get(second, file -> build(file, builds));
+        cache.save();
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        //second run: first unchanged, second modified
+        Files.writeString(second.toPath(), "{\"id\": \"second\", \"title\": \"changed\"}");
+        cache = IntroCache.load(cacheFile, "qicore");
+        ProfileResult cached = cache.get(first, file -> build(file, builds));
+        cache.get(second, file -> build(file, builds));
+        cache.save();
+        assertEquals("intro for StructureDefinition-first.json", cached.getIntro());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3, builds.get());
+
+        //third run: second was removed, and a different rule key invalidates first
+        cache = IntroCache.load(cacheFile, "qicore-ms");
+        cache.get(first, file -> build(file, builds));
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getEvictions());
+        assertEquals(4, builds.get());
+    }
+
+    @Test
+    void testRemovedProfilesAreNotSaved(@TempDir Path tempDir) throws Exception {
+        File cacheFile = tempDir.resolve("cache.json").toFile();
+        File kept = tempDir.resolve("StructureDefinition-kept.json").toFile();
+        File deleted = tempDir.resolve("StructureDefinition-deleted.json").toFile();
+        Files.writeString(kept.toPath(), "{\"id\": \"kept\"}");
+        Files.writeString(deleted.toPath(), "{\"id\": \"deleted\"}");
+        AtomicInteger builds = new AtomicInteger();
+
+        IntroCache cache = IntroCache.load(cacheFile, "qicore");
+        cache.get(kept, file -> build(file, builds));
+        cache.get(deleted, file -> build(file, builds));
+        cache.save();
+        //as in watch mode: the profile goes away after it was cached
+        cache.remove(deleted.getName());
+        cache.save();
+
+        cache = IntroCache.load(cacheFile, "qicore");
+        cache.get(kept, file -> build(file, builds));
+        cache.get(deleted, file -> build(file, builds));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        //saved through a temp file that is moved over the cache
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.filter(file -> file.getFileName().toString().endsWith(".tmp")).count());
+        }
+    }
+
+    private static ProfileResult build(File file, AtomicInteger builds) {
+        builds.incrementAndGet();
+        return new ProfileResult(file.getName() + "-intro.xml", "Title:" + file.getName(), "intro for " + file.getName(), "", null);
+    }
+}
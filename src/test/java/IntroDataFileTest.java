@@ -0,0 +1,57 @@
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.icf.ecqm.structuredefinition.introgenerator.common.IntroDataFile;
+import com.icf.ecqm.structuredefinition.introgenerator.common.MissingFilePolicy;
+import com.icf.ecqm.structuredefinition.introgenerator.common.OutputMode;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunOptions;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunSummary;
+import com.icf.ecqm.structuredefinition.introgenerator.qicore.QICoreProcessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntroDataFileTest {
+
+    private static final String PROFILE = "StructureDefinition-qicore-patient.json";
+
+    @Test
+    void testDataModeWritesDataFileOnly(@TempDir Path tempDir) throws Exception {
+        Path output = Files.createDirectories(tempDir.resolve("output"));
+        Path introNotes = Files.createDirectories(tempDir.resolve("input/intro-notes"));
+        Files.createDirectories(tempDir.resolve("input/pages"));
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(PROFILE)) {
+            Files.copy(in, output.resolve(PROFILE));
+        }
+        Path introFile = introNotes.resolve(PROFILE.replace(".json", "-intro.xml"));
+        Files.writeString(introFile, "<div>\n</div>\n");
+
+        RunOptions options = new RunOptions()
+                .setRoot(tempDir.toFile())
+                .setMissingFilePolicy(MissingFilePolicy.SKIP)
+                .setOutputMode(OutputMode.DATA)
+                .setIncremental(true);
+        RunSummary summary = new QICoreProcessor().runMain(options);
+
+        assertEquals(1, summary.getWritten());
+        assertEquals("<div>\n</div>\n", Files.readString(introFile));
+        Path dataFile = tempDir.resolve(IntroDataFile.DEFAULT_FILE);
+        JsonObject patient = JsonParser.parseString(Files.readString(dataFile)).getAsJsonObject().getAsJsonObject("qicore-patient");
+        assertEquals("StructureDefinition-qicore-patient.html", patient.get("page").getAsString());
+        JsonArray mustHave = patient.getAsJsonArray("mustHave");
+        assertFalse(mustHave.isEmpty());
+        assertTrue(mustHave.get(0).getAsJsonObject().has("element"));
+        assertTrue(mustHave.get(0).getAsJsonObject().has("short"));
+
+        //second run is served from the cache and leaves the data file as it is
+        String first = Files.readString(dataFile);
+        summary = new QICoreProcessor().runMain(options);
+        assertEquals(0, summary.getWritten());
+        assertEquals(first, Files.readString(dataFile));
+    }
+}
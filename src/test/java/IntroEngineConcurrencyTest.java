@@ -0,0 +1,88 @@
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.icf.ecqm.structuredefinition.introgenerator.common.IntroEngine;
+import com.icf.ecqm.structuredefinition.introgenerator.common.StructureDefinitionRecord;
+import com.icf.ecqm.structuredefinition.introgenerator.deqm.DEQMProcessor;
+import com.icf.ecqm.structuredefinition.introgenerator.qicore.QICoreProcessor;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IntroEngineConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 50;
+
+    @Test
+    void testSharedEnginesMatchSingleThreadedOutput() throws Exception {
+        List<StructureDefinitionRecord> profiles = loadProfiles();
+        IntroEngine[] engines = {new QICoreProcessor(), new QICoreProcessor(true), new DEQMProcessor()};
+
+        for (IntroEngine engine : engines) {
+            List<String> expected = new ArrayList<>();
+            for (StructureDefinitionRecord profile : profiles) {
+                expected.add(engine.buildStructureDefinitionIntro(profile));
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            try {
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<List<String>>> futures = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    futures.add(pool.submit(() -> {
+                        start.await();
+                        List<String> actual = new ArrayList<>();
+                        for (int round = 0; round < ROUNDS; round++) {
+                            actual.clear();
+                            for (StructureDefinitionRecord profile : profiles) {
+                                actual.add(engine.buildStructureDefinitionIntro(profile));
+                            }
+                        }
+                        return actual;
+                    }));
+                }
+                start.countDown();
+
+                for (Future<List<String>> future : futures) {
+                    assertEquals(expected, future.get(60, TimeUnit.SECONDS), engine.getClass().getSimpleName());
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * The bundled profiles plus copies with every mustSupport flipped, so threads interleave profiles whose
+     * parents classify differently.
+     */
+    private List<StructureDefinitionRecord> loadProfiles() throws Exception {
+        List<StructureDefinitionRecord> profiles = new ArrayList<>();
+        for (String resource : new String[]{"StructureDefinition-qicore-adverseevent.json", "StructureDefinition-qicore-patient.json"}) {
+            JsonObject root;
+            try (Reader reader = new InputStreamReader(getClass().getClassLoader().getResourceAsStream(resource), StandardCharsets.UTF_8)) {
+                root = JsonParser.parseReader(reader).getAsJsonObject();
+            }
+            profiles.add(StructureDefinitionRecord.fromJson(root));
+
+            JsonObject flipped = root.deepCopy();
+            JsonArray elements = flipped.getAsJsonObject("snapshot").getAsJsonArray("element");
+            for (int i = 0; i < elements.size(); i++) {
+                JsonObject element = elements.get(i).getAsJsonObject();
+                if (element.has("mustSupport")) {
+                    element.addProperty("mustSupport", !element.get("mustSupport").getAsBoolean());
+                }
+            }
+            profiles.add(StructureDefinitionRecord.fromJson(flipped));
+        }
+        return profiles;
+    }
+}
@@ -0,0 +1,34 @@
+import com.icf.ecqm.structuredefinition.introgenerator.common.IntroFileWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntroFileWriterTest {
+
+    @Test
+    void testOnlyChangedContentIsWritten(@TempDir Path tempDir) throws Exception {
+        File introFile = tempDir.resolve("StructureDefinition-test-intro.xml").toFile();
+
+        assertTrue(IntroFileWriter.writeIfChanged(introFile, "<div>first</div>\n"));
+        FileTime untouched = FileTime.fromMillis(1_000_000L);
+        Files.setLastModifiedTime(introFile.toPath(), untouched);
+
+        assertFalse(IntroFileWriter.writeIfChanged(introFile, "<div>first</div>\n"));
+        assertEquals(untouched, Files.getLastModifiedTime(introFile.toPath()));
+
+        assertTrue(IntroFileWriter.writeIfChanged(introFile, "<div>second</div>\n"));
+        assertEquals("<div>second</div>\n", Files.readString(introFile.toPath(), IntroFileWriter.CHARSET));
+
+        //no temp files left next to the target:
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+}
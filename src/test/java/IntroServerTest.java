@@ -0,0 +1,123 @@
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.icf.ecqm.structuredefinition.introgenerator.IntroServer;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunOptions;
+import com.icf.ecqm.structuredefinition.introgenerator.qicore.QICoreProcessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntroServerTest {
+
+    private static final String PATIENT = "StructureDefinition-qicore-patient.json";
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void testIntroAndRegenerateRequests(@TempDir Path tempDir) throws Exception {
+        Path output = Files.createDirectories(tempDir.resolve("output"));
+        Path introNotes = Files.createDirectories(tempDir.resolve("input/intro-notes"));
+        Files.createDirectories(tempDir.resolve("input/pages"));
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(PATIENT)) {
+            Files.copy(in, output.resolve(PATIENT));
+        }
+        Files.writeString(introNotes.resolve("StructureDefinition-qicore-patient-intro.xml"), "<div>\n</div>\n");
+        String json = Files.readString(output.resolve(PATIENT));
+
+        IntroServer server = IntroServer.start(0, new RunOptions().setThreads(2), List.of(tempDir.toFile()));
+        try {
+            HttpResponse<String> intro = post(server, "/intro?type=qicore", json);
+            assertEquals(200, intro.statusCode());
+            assertEquals(new QICoreProcessor().buildStructureDefinitionIntro(json), intro.body());
+            assertTrue(intro.headers().firstValue("X-Elapsed-Millis").isPresent());
+
+            String root = "&root=" + URLEncoder.encode(tempDir.toString(), StandardCharsets.UTF_8);
+            HttpResponse<String> files = post(server, "/regenerate-files?type=qicore" + root, "output/" + PATIENT + "\n");
+            assertEquals(200, files.statusCode(), files.body());
+            JsonObject summary = JsonParser.parseString(files.body()).getAsJsonObject();
+            assertEquals(1, summary.get("processed").getAsInt());
+            assertEquals(1, summary.get("written").getAsInt());
+            assertTrue(Files.readString(introNotes.resolve("StructureDefinition-qicore-patient-intro.xml")).contains(intro.body()));
+
+            HttpResponse<String> full = post(server, "/regenerate?type=qicore" + root, "");
+            assertEquals(200, full.statusCode(), full.body());
+            assertTrue(Files.isRegularFile(tempDir.resolve("input/pages/qi-elements.md")));
+
+            assertEquals(400, post(server, "/intro?type=unknown", json).statusCode());
+            assertEquals(400, post(server, "/intro?type=qicore", "not json").statusCode());
+
+            HttpResponse<String> status = client.send(HttpRequest.newBuilder(uri(server, "/status")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            JsonObject endpoints = JsonParser.parseString(status.body()).getAsJsonObject().getAsJsonObject("endpoints");
+            assertEquals(3, endpoints.getAsJsonObject("/intro").get("requests").getAsInt());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void testRejectsOtherRootsHostsAndLargeBodies(@TempDir Path allowed, @TempDir Path other) throws Exception {
+        Files.createDirectories(allowed.resolve("ig"));
+        IntroServer server = IntroServer.start(0, new RunOptions(), List.of(allowed.toFile()));
+        try {
+            //folders inside an allowed root get as far as looking for the file, anything else is forbidden
+            assertEquals(400, post(server, "/regenerate-files?type=qicore&root=" + encode(allowed.resolve("ig")), "output/x.json\n").statusCode());
+            assertEquals(403, post(server, "/regenerate?type=qicore&root=" + encode(other), "").statusCode());
+            assertEquals(403, post(server, "/regenerate-files?type=qicore&root=" + encode(allowed.resolve("ig")), "../../x.json\n").statusCode());
+
+            assertEquals(403, client.send(HttpRequest.newBuilder(uri(server, "/status")).header("Origin", "http://example.com").build(),
+                    HttpResponse.BodyHandlers.ofString()).statusCode());
+            //the HttpClient won't send another Host, so these go over a plain socket:
+            assertTrue(rawRequest(server, "GET /status HTTP/1.1\r\nHost: example.com\r\n\r\n").startsWith("HTTP/1.1 403"));
+            assertTrue(rawRequest(server, "GET /status HTTP/1.1\r\nHost: localhost:" + server.getPort() + "\r\n\r\n").startsWith("HTTP/1.1 200"));
+            assertTrue(rawRequest(server, "POST /intro?type=qicore HTTP/1.1\r\nHost: 127.0.0.1\r\nContent-Length: 1000000000\r\n\r\n{")
+                    .startsWith("HTTP/1.1 413"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static String encode(Path path) {
+        return URLEncoder.encode(path.toString(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the status line of the response
+     */
+    private static String rawRequest(IntroServer server, String request) throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(request.getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            StringBuilder statusLine = new StringBuilder();
+            for (int c = in.read(); c != -1 && c != '\r'; c = in.read()) {
+                statusLine.append((char) c);
+            }
+            return statusLine.toString();
+        }
+    }
+
+    private HttpResponse<String> post(IntroServer server, String pathAndQuery, String body) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(server, pathAndQuery))
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static URI uri(IntroServer server, String pathAndQuery) {
+        return URI.create("http://127.0.0.1:" + server.getPort() + pathAndQuery);
+    }
+}
@@ -0,0 +1,50 @@
+import com.icf.ecqm.structuredefinition.introgenerator.common.Log;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogTest {
+
+    private final PrintStream console = System.out;
+
+    @AfterEach
+    void restore() {
+        Log.flush();
+        System.setOut(console);
+        Log.setLevel(Log.Level.INFO);
+    }
+
+    @Test
+    void testLevelsFilterMessages() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Log.flush();
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+
+        Log.setLevel(Log.Level.QUIET);
+        Log.info("info at quiet");
+        Log.warn("warn at quiet");
+        Log.setLevel(Log.Level.INFO);
+        Log.debug("debug at info");
+        Log.info("info at info");
+        Log.setLevel(Log.Level.DEBUG);
+        Log.debug("debug at debug");
+        Log.flush();
+
+        String printed = out.toString(StandardCharsets.UTF_8);
+        assertFalse(printed.contains("info at quiet"));
+        assertFalse(printed.contains("debug at info"));
+        String separator = System.lineSeparator();
+        assertEquals("warn at quiet" + separator + "info at info" + separator + "debug at debug" + separator, printed);
+    }
+
+    @Test
+    void testLevelFromString() {
+        assertEquals(Log.Level.DEBUG, Log.Level.fromString(" Debug "));
+        assertThrows(IllegalArgumentException.class, () -> Log.Level.fromString("verbose"));
+    }
+}
@@ -0,0 +1,22 @@
+import com.icf.ecqm.structuredefinition.introgenerator.common.MarkdownText;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarkdownTextTest {
+
+    @Test
+    void testAppendEscaped() {
+        assertEquals("male \\| female \\| other", MarkdownText.appendEscaped(new StringBuilder(), "male | female | other").toString());
+        assertEquals("\\|\\|", MarkdownText.appendEscaped(new StringBuilder(), "||").toString());
+        assertEquals("id: no pipes", MarkdownText.appendEscaped(new StringBuilder("id: "), "no pipes").toString());
+        assertEquals("value[x]: Value", MarkdownText.appendEscaped(new StringBuilder(), "value[x]: Value").toString());
+    }
+
+    @Test
+    void testMarkupAndLineBreaksAreLeftAsTyped() {
+        assertEquals("< \\| <= \\| >= \\| >", MarkdownText.appendEscaped(new StringBuilder(), "< | <= | >= | >").toString());
+        assertEquals("see <a href='x'>x</a> **b** _i_", MarkdownText.appendEscaped(new StringBuilder(), "see <a href='x'>x</a> **b** _i_").toString());
+        assertEquals("two\nlines", MarkdownText.appendEscaped(new StringBuilder(), "two\nlines").toString());
+    }
+}
@@ -0,0 +1,54 @@
+import com.icf.ecqm.structuredefinition.introgenerator.common.OutputWatcher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutputWatcherTest {
+
+    @Test
+    void testBurstOfWritesIsReportedAsOneBatch(@TempDir Path tempDir) throws Exception {
+        Path removed = Files.writeString(tempDir.resolve("StructureDefinition-removed.json"), "{}");
+        BlockingQueue<List<Set<String>>> batches = new LinkedBlockingQueue<>();
+
+        OutputWatcher watcher = new OutputWatcher(tempDir.toFile(), (dir, name) -> name.startsWith("StructureDefinition"), 300);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> {
+                watcher.watch((changedFiles, deletedFiles) -> batches.add(Arrays.asList(names(changedFiles), names(deletedFiles))));
+                return null;
+            });
+
+            //the publisher rewrites files several times in quick succession:
+            for (int i = 0; i < 5; i++) {
+                Files.writeString(tempDir.resolve("StructureDefinition-a.json"), "{\"version\": " + i + "}");
+                Files.writeString(tempDir.resolve("StructureDefinition-b.json"), "{\"version\": " + i + "}");
+                Files.writeString(tempDir.resolve("ValueSet-ignored.json"), "{}");
+            }
+            Files.delete(removed);
+
+            List<Set<String>> batch = batches.poll(10, TimeUnit.SECONDS);
+            assertNotNull(batch, "no change reported");
+            assertEquals(new HashSet<>(Arrays.asList("StructureDefinition-a.json", "StructureDefinition-b.json")), batch.get(0));
+            assertEquals(Collections.singleton("StructureDefinition-removed.json"), batch.get(1));
+            assertNull(batches.poll(1, TimeUnit.SECONDS), "burst was reported more than once");
+        } finally {
+            watcher.close();
+            executor.shutdownNow();
+        }
+    }
+
+    private static Set<String> names(Set<File> files) {
+        Set<String> names = new HashSet<>();
+        for (File file : files) {
+            names.add(file.getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,95 @@
+import com.icf.ecqm.structuredefinition.introgenerator.common.PendingProfile;
+import com.icf.ecqm.structuredefinition.introgenerator.common.ProfileReader;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunMetrics;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunOptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfileArchiveTest {
+
+    @Test
+    void testDefinitionsZip(@TempDir Path tempDir) throws Exception {
+        Path zip = tempDir.resolve("definitions.json.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            for (String name : new String[]{"StructureDefinition-a.json", "ValueSet-x.json", "StructureDefinition-b.json",
+                    "nested/StructureDefinition-c.json"}) {
+                out.putNextEntry(new ZipEntry(name));
+                out.write(("{\"id\": \"" + name + "\"}").getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+
+        assertEquals(List.of("StructureDefinition-a.json:{\"id\": \"StructureDefinition-a.json\"}",
+                "StructureDefinition-b.json:{\"id\": \"StructureDefinition-b.json\"}"), run(zip, 2));
+    }
+
+    @Test
+    void testPackageTgz(@TempDir Path tempDir) throws Exception {
+        Path tgz = tempDir.resolve("package.tgz");
+        String longName = "StructureDefinition-" + "x".repeat(120) + ".json";
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tgz))) {
+            tarEntry(out, "package/package.json", "{}");
+            tarEntry(out, "package/StructureDefinition-a.json", "{\"id\": \"a\"}");
+            tarEntry(out, "package/example/StructureDefinition-example.json", "{}");
+            tarEntry(out, "package/" + longName.substring(0, 50), longName, "{\"id\": \"long\"}");
+            out.write(new byte[1024]);
+        }
+
+        assertEquals(List.of("StructureDefinition-a.json:{\"id\": \"a\"}", longName + ":{\"id\": \"long\"}"), run(tgz, 1));
+    }
+
+    private static List<String> run(Path archive, int threads) throws Exception {
+        List<String> results = new ArrayList<>();
+        try (ProfileReader<String> reader = ProfileReader.start(archive.toFile(), new RunOptions().setThreads(threads), RunMetrics.disabled(),
+                (name, json) -> name + ":" + new String(json, StandardCharsets.UTF_8))) {
+            for (PendingProfile<String> profile = reader.next(); profile != null; profile = reader.next()) {
+                results.add(profile.getResult().get());
+            }
+        }
+        return results;
+    }
+
+    private static void tarEntry(OutputStream out, String path, String content) throws Exception {
+        tarEntry(out, path, null, content);
+    }
+
+    /**
+     * @param paxPath written as a pax "path" record before the entry, for names longer than the header allows
+     */
+    private static void tarEntry(OutputStream out, String path, String paxPath, String content) throws Exception {
+        if (paxPath != null) {
+            String record = " path=package/" + paxPath + "\n";
+            int length = record.length() + 3;
+            writeEntry(out, "PaxHeader", 'x', (length + record).getBytes(StandardCharsets.UTF_8));
+        }
+        writeEntry(out, path, '0', content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeEntry(OutputStream out, String path, char type, byte[] content) throws Exception {
+        byte[] header = new byte[512];
+        byte[] name = path.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(name, 0, header, 0, Math.min(name.length, 100));
+        byte[] size = String.format("%011o", content.length).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(size, 0, header, 124, size.length);
+        header[156] = (byte) type;
+        System.arraycopy("ustar".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 5);
+        out.write(header);
+        ByteArrayOutputStream padded = new ByteArrayOutputStream();
+        padded.write(content);
+        padded.write(new byte[(512 - content.length % 512) % 512]);
+        out.write(padded.toByteArray());
+    }
+}
@@ -0,0 +1,47 @@
+import com.icf.ecqm.structuredefinition.introgenerator.common.DiscoveryMode;
+import com.icf.ecqm.structuredefinition.introgenerator.common.ProfileDiscovery;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfileDiscoveryTest {
+
+    @Test
+    void testIndexAndListing(@TempDir Path tempDir) throws Exception {
+        for (String name : new String[]{"StructureDefinition-a.json", "structuredefinition-b.JSON", "StructureDefinition-a.xml",
+                "ValueSet-x.json", "StructureDefinition-a.html"}) {
+            Files.writeString(tempDir.resolve(name), "{}");
+        }
+        File outputDir = tempDir.toFile();
+
+        //no manifest: the folder is listed
+        assertEquals(Set.of("StructureDefinition-a.json", "structuredefinition-b.JSON"), names(ProfileDiscovery.discover(outputDir, DiscoveryMode.INDEX)));
+
+        //manifest: only its StructureDefinition entries whose files exist
+        Files.writeString(tempDir.resolve(ProfileDiscovery.INDEX_FILE), "{\"index-version\": 2, \"files\": ["
+                + "{\"filename\": \"StructureDefinition-a.json\", \"resourceType\": \"StructureDefinition\", \"id\": \"a\"},"
+                + "{\"filename\": \"ValueSet-x.json\", \"resourceType\": \"ValueSet\", \"id\": \"x\"},"
+                + "{\"filename\": \"StructureDefinition-gone.json\", \"resourceType\": \"StructureDefinition\", \"id\": \"gone\"},"
+                + "{\"filename\": \"../StructureDefinition-a.json\", \"resourceType\": \"StructureDefinition\", \"id\": \"a\"}]}");
+        assertEquals(Set.of("StructureDefinition-a.json"), names(ProfileDiscovery.discover(outputDir, DiscoveryMode.INDEX)));
+        assertEquals(2, ProfileDiscovery.discover(outputDir, DiscoveryMode.LIST).length);
+
+        //unreadable manifest: listed again
+        Files.writeString(tempDir.resolve(ProfileDiscovery.INDEX_FILE), "{\"files\": [");
+        assertEquals(2, ProfileDiscovery.discover(outputDir, DiscoveryMode.INDEX).length);
+
+        assertEquals(0, ProfileDiscovery.discover(tempDir.resolve("missing").toFile(), DiscoveryMode.INDEX).length);
+    }
+
+    private static Set<String> names(File[] files) {
+        return Arrays.stream(files).map(File::getName).collect(Collectors.toSet());
+    }
+}
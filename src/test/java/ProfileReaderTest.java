@@ -0,0 +1,109 @@
+import com.icf.ecqm.structuredefinition.introgenerator.common.PendingProfile;
+import com.icf.ecqm.structuredefinition.introgenerator.common.ProfileReader;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunMetrics;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunOptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfileReaderTest {
+
+    @Test
+    void testResultsInInputOrder(@TempDir Path tempDir) throws Exception {
+        File[] files = writeFiles(tempDir, 20);
+        //a file that disappears after discovery fails on its own, the others still come through
+        files[3] = tempDir.resolve("StructureDefinition-gone.json").toFile();
+
+        List<String> results = new ArrayList<>();
+        try (ProfileReader<String> reader = ProfileReader.start(files, new RunOptions().setThreads(4), RunMetrics.disabled(),
+                (name, json) -> {
+                    //earlier profiles take longer, so they finish after later ones
+                    Thread.sleep(20 - Integer.parseInt(name.replaceAll("\\D", "")));
+                    return new String(json, StandardCharsets.UTF_8);
+                })) {
+            for (PendingProfile<String> profile = reader.next(); profile != null; profile = reader.next()) {
+                try {
+                    results.add(profile.getResult().get());
+                } catch (ExecutionException e) {
+                    results.add("failed " + profile.getName());
+                }
+            }
+            assertNull(reader.next());
+        }
+
+        assertEquals(20, results.size());
+        assertEquals("failed StructureDefinition-gone.json", results.get(3));
+        for (int i = 0; i < 20; i++) {
+            if (i != 3) {
+                assertEquals("{\"id\": \"p" + i + "\"}", results.get(i));
+            }
+        }
+    }
+
+    @Test
+    void testReaderWaitsForSlowCaller(@TempDir Path tempDir) throws Exception {
+        File[] files = writeFiles(tempDir, 100);
+        AtomicInteger started = new AtomicInteger();
+
+        try (ProfileReader<String> reader = ProfileReader.start(files, new RunOptions().setThreads(2), RunMetrics.disabled(),
+                (name, json) -> {
+                    started.incrementAndGet();
+                    return name;
+                })) {
+            assertNotNull(reader.next());
+            Thread.sleep(500);
+            //the one taken, 8 waiting for the caller (4 per worker) and one more handed to the workers before the reader blocks
+            assertTrue(started.get() <= 10, "started " + started.get());
+
+            int count = 1;
+            for (PendingProfile<String> profile = reader.next(); profile != null; profile = reader.next()) {
+                profile.getResult().get();
+                count++;
+            }
+            assertEquals(100, count);
+            assertEquals(100, started.get());
+        }
+    }
+
+    @Test
+    void testFileTasksGetTheFilesUnread(@TempDir Path tempDir) throws Exception {
+        //never written: reading any of them ahead would fail the profile
+        File[] files = new File[10];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = tempDir.resolve("StructureDefinition-p" + i + ".json").toFile();
+        }
+
+        for (int threads : new int[]{1, 3}) {
+            List<String> results = new ArrayList<>();
+            try (ProfileReader<String> reader = ProfileReader.start(files, new RunOptions().setThreads(threads), File::getName)) {
+                for (PendingProfile<String> profile = reader.next(); profile != null; profile = reader.next()) {
+                    results.add(profile.getResult().get());
+                }
+            }
+            assertEquals(10, results.size());
+            for (int i = 0; i < files.length; i++) {
+                assertEquals(files[i].getName(), results.get(i));
+            }
+        }
+    }
+
+    private static File[] writeFiles(Path dir, int count) throws Exception {
+        File[] files = new File[count];
+        for (int i = 0; i < count; i++) {
+            Path file = dir.resolve("StructureDefinition-p" + i + ".json");
+            Files.write(file, ("{\"id\": \"p" + i + "\"}").getBytes(StandardCharsets.UTF_8));
+            files[i] = file.toFile();
+        }
+        return files;
+    }
+}
@@ -1,9 +1,31 @@
 import com.icf.ecqm.structuredefinition.introgenerator.qicore.QICoreProcessor;
+import com.google.gson.JsonParser;
+import com.icf.ecqm.structuredefinition.introgenerator.common.ProfileResult;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunOptions;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunSummary;
+import com.icf.ecqm.structuredefinition.introgenerator.common.StreamingSnapshotExtractor;
+import com.icf.ecqm.structuredefinition.introgenerator.common.StructureDefinitionRecord;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 
 class QICoreProcessorTest {
 
@@ -20,9 +42,9 @@ class QICoreProcessorTest {
                 + "\"id\": \"test-qicore\","
                 + "\"snapshot\": {"
                 + "  \"element\": ["
-                + "    { \"path\": \"Observation.category\", \"short\": \"Category\", \"min\": 1, \"max\": \"1\" },"
+                + "    { \"path\": \"Observation.category\", \"short\": \"Category\", \"min\": 1, \"max\": \"1\", \"mustSupport\": true },"
                 + "    { \"path\": \"Observation.value\", \"short\": \"Value\", \"extension\": ["
-                + "      { \"url\": \"http://hl7.org/fhir/StructureDefinition/cqf-modelInfo-primaryCodePath\", \"valueString\": \"some-value\" }"
+                + "      { \"url\": \"http://hl7.org/fhir/us/qicore/StructureDefinition/qicore-keyelement\", \"valueBoolean\": true }"
                 + "    ] }"
                 + "  ]"
                 + "}"
@@ -32,11 +54,31 @@ class QICoreProcessorTest {
 
         // Verify Must-Have Section
         assertTrue(output.contains("Must Have:"));
-        assertTrue(output.contains("Observation.category: Category"));
+        assertTrue(output.contains("category: Category"));
 
         // Verify QI Elements Section
         assertTrue(output.contains("QI Elements:"));
-        assertTrue(output.contains("Observation.value: Value"));
+        assertTrue(output.contains("value: Value"));
+    }
+
+    @Test
+    void testElementsWithoutIdFallBackToPath() {
+        String jsonInput = "{"
+                + "\"id\": \"test-qicore\","
+                + "\"snapshot\": {"
+                + "  \"element\": ["
+                + "    { \"path\": \"Observation\" },"
+                + "    { \"path\": \"Observation.code\", \"short\": \"Code\", \"min\": 1, \"max\": \"1\", \"mustSupport\": true },"
+                + "    { \"path\": \"Observation.code.text\", \"short\": \"Text\", \"min\": 1, \"max\": \"1\", \"mustSupport\": true }"
+                + "  ]"
+                + "}"
+                + "}";
+
+        String output = processor.buildStructureDefinitionIntro(jsonInput);
+
+        assertTrue(output.contains("code: Code"));
+        //nested under a Must Have parent found by its path
+        assertTrue(output.contains("code.text: Text"), output);
     }
 
     @Test
@@ -49,4 +91,94 @@ class QICoreProcessorTest {
         String output = processor.buildStructureDefinitionIntro(jsonInput);
         assertEquals("", output);
     }
+
+    @Test
+    void testOutputFileIsOpenedAndParsedOnce(@TempDir Path tempDir) throws Exception {
+        String jsonInput = "{"
+                + "\"id\": \"test-qicore\","
+                + "\"title\": \"QICore Test\","
+                + "\"snapshot\": {"
+                + "  \"element\": ["
+                + "    { \"id\": \"Observation.status\", \"path\": \"Observation.status\", \"short\": \"Status\", \"min\": 1, \"max\": \"1\", \"mustSupport\": true }"
+                + "  ]"
+                + "}"
+                + "}";
+        Path outputFile = Files.createDirectories(tempDir.resolve("output")).resolve("StructureDefinition-test-qicore.json");
+        Files.writeString(outputFile, jsonInput);
+        Path introFile = Files.createDirectories(tempDir.resolve("input/intro-notes")).resolve("StructureDefinition-test-qicore-intro.xml");
+        Files.writeString(introFile, "<div>\n</div>\n");
+        RunOptions options = new RunOptions().setRoot(tempDir.toFile()).setThreads(1);
+        RunSummary summary;
+
+        //counts the opens of the profile itself (not the overload open(path, options...) delegates to); every call still
+        //goes to the real FileChannel:
+        AtomicInteger opens = new AtomicInteger();
+        AtomicInteger depth = new AtomicInteger();
+        try (MockedStatic<JsonParser> parser = Mockito.mockStatic(JsonParser.class, Mockito.CALLS_REAL_METHODS);
+             MockedStatic<FileChannel> channels = Mockito.mockStatic(FileChannel.class, invocation -> {
+                 if (invocation.getMethod().getName().equals("open") && outputFile.equals(invocation.getArgument(0))
+                         && depth.get() == 0) {
+                     opens.incrementAndGet();
+                 }
+                 depth.incrementAndGet();
+                 try {
+                     return invocation.callRealMethod();
+                 } finally {
+                     depth.decrementAndGet();
+                 }
+             })) {
+            summary = processor.runFiles(options, new File[]{outputFile.toFile()});
+
+            parser.verify(() -> JsonParser.parseReader(any(Reader.class)), times(1));
+            parser.verify(() -> JsonParser.parseString(anyString()), never());
+        }
+        assertEquals(1, opens.get());
+
+        assertEquals(1, summary.getWritten());
+        assertTrue(Files.readString(introFile).contains("status: Status"));
+    }
+
+    @Test
+    void testOnlyPipesAreEscapedOnThePage(@TempDir Path tempDir) throws Exception {
+        String jsonInput = "{"
+                + "\"id\": \"test-markup\","
+                + "\"title\": \"Markup Test\","
+                + "\"snapshot\": {"
+                + "  \"element\": ["
+                + "    { \"id\": \"Observation.code\", \"path\": \"Observation.code\", \"short\": \"< | <= | >= | >\", \"min\": 1, \"max\": \"1\", \"mustSupport\": true },"
+                + "    { \"id\": \"Observation.value[x]\", \"path\": \"Observation.value[x]\", \"short\": \"see <b>this</b>\", \"extension\": ["
+                + "      { \"url\": \"http://hl7.org/fhir/us/qicore/StructureDefinition/qicore-keyelement\", \"valueBoolean\": true }"
+                + "    ] }"
+                + "  ]"
+                + "}"
+                + "}";
+        Path outputFile = tempDir.resolve("StructureDefinition-test-markup.json");
+        Files.writeString(outputFile, jsonInput);
+
+        ProfileResult result = processor.buildProfileResult(outputFile.toFile(), false);
+
+        assertEquals("Markup Test:StructureDefinition-test-markup.html", result.getMdKey());
+        assertEquals("\n\n**Must Have:**\n"
+                        + "* code: < \\| <= \\| >= \\| >\n\n"
+                        + "\n**QI Elements:**\n"
+                        + "* value[x]: see <b>this</b>\n\n",
+                result.getMdEntry());
+    }
+
+    @Test
+    void testStreamingExtractionMatchesTreeParsing() throws Exception {
+        for (String resource : new String[]{"StructureDefinition-qicore-adverseevent.json", "StructureDefinition-qicore-patient.json"}) {
+            String treeIntro;
+            try (Reader reader = new InputStreamReader(getClass().getClassLoader().getResourceAsStream(resource), StandardCharsets.UTF_8)) {
+                treeIntro = processor.buildStructureDefinitionIntro(JsonParser.parseReader(reader).getAsJsonObject());
+            }
+            StructureDefinitionRecord streamed;
+            try (Reader reader = new InputStreamReader(getClass().getClassLoader().getResourceAsStream(resource), StandardCharsets.UTF_8)) {
+                streamed = StreamingSnapshotExtractor.extract(reader);
+            }
+
+            assertTrue(streamed.getTitle() != null && !streamed.getSnapshotElements().isEmpty());
+            assertEquals(treeIntro, processor.buildStructureDefinitionIntro(streamed), resource);
+        }
+    }
 }
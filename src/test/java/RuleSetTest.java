@@ -0,0 +1,103 @@
+import com.google.gson.JsonParser;
+import com.icf.ecqm.structuredefinition.introgenerator.common.ElementIndex;
+import com.icf.ecqm.structuredefinition.introgenerator.common.ElementRecord;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RuleSet;
+import com.icf.ecqm.structuredefinition.introgenerator.common.StructureDefinitionRecord;
+import com.icf.ecqm.structuredefinition.introgenerator.deqm.DEQMProcessor;
+import com.icf.ecqm.structuredefinition.introgenerator.qicore.QICoreProcessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleSetTest {
+
+    private static final String PROFILE = "{\"id\": \"test\", \"snapshot\": {\"element\": ["
+            + "{\"id\": \"Observation\", \"path\": \"Observation\", \"min\": 0, \"max\": \"*\"},"
+            + "{\"id\": \"Observation.status\", \"path\": \"Observation.status\", \"short\": \"Status\", \"min\": 1, \"max\": \"1\", \"mustSupport\": true},"
+            + "{\"id\": \"Observation.code\", \"path\": \"Observation.code\", \"short\": \"Code\", \"min\": 1, \"max\": \"1\"},"
+            + "{\"id\": \"Observation.subject\", \"path\": \"Observation.subject\", \"short\": \"Subject\", \"min\": 0, \"max\": \"1\", \"mustSupport\": true}"
+            + "]}}";
+
+    @Test
+    void testLoadedRuleSet(@TempDir Path tempDir) throws Exception {
+        //the built in qicore-ms rules, with the lists in the opposite order
+        Path file = tempDir.resolve("rules.json");
+        Files.writeString(file, "{\"name\": \"reordered\", \"lists\": ["
+                + "{\"name\": \"qiElements\", \"when\": {\"min\": 0, \"mustSupport\": false}},"
+                + "{\"name\": \"mustHave\", \"when\": {\"min\": 1, \"max\": [\"1\", \"*\"], \"mustSupport\": true}}]}");
+        RuleSet rules = RuleSet.load(file.toFile());
+
+        assertEquals(List.of("qiElements", "mustHave"), rules.getListNames());
+        assertEquals(new QICoreProcessor(true).buildStructureDefinitionIntro(PROFILE),
+                new QICoreProcessor(rules).buildStructureDefinitionIntro(PROFILE));
+        assertNotEquals("qicore-ms", new QICoreProcessor(rules).getRuleKey());
+
+        //a single max value, and a deqm list set that only takes must support elements
+        Files.writeString(file, "{\"name\": \"ms-only\", \"lists\": ["
+                + "{\"name\": \"mustHave\", \"when\": {\"min\": 1, \"max\": \"1\", \"mustSupport\": true}},"
+                + "{\"name\": \"mustSupport\", \"when\": {\"mustSupport\": true}}]}");
+        String intro = new DEQMProcessor(RuleSet.load(file.toFile())).buildStructureDefinitionIntro(PROFILE);
+        assertTrue(intro.contains("status: Status"));
+        assertTrue(intro.contains("subject: Subject"));
+        assertFalse(intro.contains("code: Code"));
+    }
+
+    @Test
+    void testNestedChildrenFollowTheirImmediateParent() {
+        String profile = "{\"id\": \"test-nested\", \"snapshot\": {\"element\": ["
+                + "{\"id\": \"Observation\", \"path\": \"Observation\", \"min\": 0, \"max\": \"*\"},"
+                + "{\"id\": \"Observation.component\", \"path\": \"Observation.component\", \"min\": 1, \"max\": \"*\", \"mustSupport\": true},"
+                + "{\"id\": \"Observation.component.code\", \"path\": \"Observation.component.code\", \"min\": 1, \"max\": \"1\", \"mustSupport\": true},"
+                + "{\"id\": \"Observation.component.code.coding\", \"path\": \"Observation.component.code.coding\", \"min\": 1, \"max\": \"*\", \"mustSupport\": true},"
+                + "{\"id\": \"Observation.component.value\", \"path\": \"Observation.component.value\", \"min\": 0, \"max\": \"1\"},"
+                + "{\"id\": \"Observation.component.value.id\", \"path\": \"Observation.component.value.id\", \"min\": 1, \"max\": \"1\", \"mustSupport\": true}"
+                + "]}}";
+        RuleSet rules = RuleSet.builtIn("qicore");
+        int mustHave = rules.requireLists("mustHave", "qiElements")[0];
+
+        ElementIndex index = new ElementIndex();
+        Map<String, Integer> lists = new HashMap<>();
+        Map<String, ElementIndex.Node> nodes = new HashMap<>();
+        for (ElementRecord element : StructureDefinitionRecord.fromJson(JsonParser.parseString(profile).getAsJsonObject()).getSnapshotElements()) {
+            ElementIndex.Node node = index.add(element);
+            nodes.put(element.getId(), node);
+            lists.put(element.getId(), rules.classify(element, node));
+        }
+
+        assertEquals(4, nodes.get("Observation.component.code.coding").getDepth());
+        assertSame(nodes.get("Observation.component.value"), nodes.get("Observation.component.value.id").getParent());
+        assertEquals(mustHave, lists.get("Observation.component"));
+        assertEquals(mustHave, lists.get("Observation.component.code"));
+        assertEquals(mustHave, lists.get("Observation.component.code.coding"));
+        assertEquals(-1, lists.get("Observation.component.value"));
+        //its parent made no list, so it isn't considered even though it would qualify:
+        assertEquals(-1, lists.get("Observation.component.value.id"));
+    }
+
+    @Test
+    void testInvalidRuleSets(@TempDir Path tempDir) throws Exception {
+        assertEquals("qicore", RuleSet.builtIn("qicore").getKey());
+        assertThrows(IllegalArgumentException.class, () -> RuleSet.builtIn("other"));
+        //the lists have to be the ones the processor renders
+        assertThrows(IllegalArgumentException.class, () -> new DEQMProcessor(RuleSet.builtIn("qicore")));
+
+        Path file = tempDir.resolve("rules.json");
+        for (String config : new String[]{
+                "[]",
+                "{\"name\": \"x\", \"lists\": []}",
+                "{\"name\": \"x\", \"lists\": [{\"name\": \"mustHave\", \"when\": {\"minimum\": 1}}]}",
+                "{\"name\": \"x\", \"lists\": [{\"name\": \"mustHave\", \"when\": {\"mustSupport\": \"yes\"}}]}",
+                "{\"name\": \"x\", \"lists\": [{\"name\": \"mustHave\", \"when\": {\"min\": \"one\"}}]}",
+                "{\"name\": \"x\", \"lists\": [{\"name\": \"mustHave\", \"when\": {}}, {\"name\": \"mustHave\", \"when\": {}}]}"}) {
+            Files.writeString(file, config);
+            assertThrows(IllegalArgumentException.class, () -> RuleSet.load(file.toFile()), config);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.icf.ecqm.structuredefinition.introgenerator.common.MissingFilePolicy;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunMetrics;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunOptions;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunSummary;
+import com.icf.ecqm.structuredefinition.introgenerator.qicore.QICoreProcessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RunMetricsTest {
+
+    private static final String[] PROFILES = {"StructureDefinition-qicore-patient.json", "StructureDefinition-qicore-adverseevent.json"};
+
+    @Test
+    void testRunReportsPhasesAndProfiles(@TempDir Path tempDir) throws Exception {
+        Path output = Files.createDirectories(tempDir.resolve("output"));
+        Path introNotes = Files.createDirectories(tempDir.resolve("input/intro-notes"));
+        Files.createDirectories(tempDir.resolve("input/pages"));
+        for (String profile : PROFILES) {
+            try (InputStream in = getClass().getClassLoader().getResourceAsStream(profile)) {
+                Files.copy(in, output.resolve(profile));
+            }
+            Files.writeString(introNotes.resolve(profile.replace(".json", "-intro.xml")), "<div>\n</div>\n");
+        }
+
+        RunOptions options = new RunOptions()
+                .setRoot(tempDir.toFile())
+                .setThreads(2)
+                .setMissingFilePolicy(MissingFilePolicy.SKIP)
+                .setMetricsFile(tempDir.resolve("metrics.json").toFile());
+        RunSummary summary = new QICoreProcessor().runMain(options);
+
+        assertNotNull(summary.getMetrics());
+        JsonObject json = JsonParser.parseString(summary.getMetrics().toJson()).getAsJsonObject();
+        JsonObject phases = json.getAsJsonObject("phases");
+        assertEquals(2, phases.getAsJsonObject(RunMetrics.PARSE).get("count").getAsInt());
+        assertEquals(2, phases.getAsJsonObject(RunMetrics.CLASSIFY).get("count").getAsInt());
+        assertEquals(2, phases.getAsJsonObject(RunMetrics.SPLICE).get("count").getAsInt());
+        assertEquals(1, phases.getAsJsonObject(RunMetrics.PAGE).get("count").getAsInt());
+        assertEquals(Files.size(output.resolve(PROFILES[0])) + Files.size(output.resolve(PROFILES[1])),
+                phases.getAsJsonObject(RunMetrics.PARSE).get("bytes").getAsLong());
+
+        JsonObject profiles = json.getAsJsonObject("profiles");
+        assertEquals(2, profiles.get("count").getAsInt());
+        assertEquals(2, profiles.getAsJsonArray("slowest").size());
+        long largest = profiles.getAsJsonArray("largest").get(0).getAsJsonObject().get("bytes").getAsLong();
+        assertEquals(largest, profiles.getAsJsonObject("bytesPercentiles").get("max").getAsLong());
+    }
+
+    @Test
+    void testNoMetricsWithoutReport(@TempDir Path tempDir) throws Exception {
+        Files.createDirectories(tempDir.resolve("output"));
+        RunSummary summary = new QICoreProcessor().runMain(new RunOptions().setRoot(tempDir.toFile()));
+        assertNull(summary.getMetrics());
+        assertFalse(RunMetrics.forOptions(new RunOptions()).isEnabled());
+    }
+}
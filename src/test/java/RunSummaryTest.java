@@ -0,0 +1,37 @@
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.icf.ecqm.structuredefinition.introgenerator.common.MissingFilePolicy;
+import com.icf.ecqm.structuredefinition.introgenerator.common.RunSummary;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RunSummaryTest {
+
+    @Test
+    void testSummaryJsonHasAllCounters() {
+        RunSummary summary = new RunSummary();
+        summary.recordProcessed(true);
+        summary.recordProcessed(false);
+        summary.recordWrite(true);
+        summary.recordWrite(false);
+        summary.recordMissing(3);
+        summary.recordError();
+
+        JsonObject json = JsonParser.parseString(summary.finish().toJson()).getAsJsonObject();
+        assertEquals(2, json.get("processed").getAsInt());
+        assertEquals(1, json.get("generated").getAsInt());
+        assertEquals(1, json.get("written").getAsInt());
+        assertEquals(1, json.get("unchanged").getAsInt());
+        assertEquals(3, json.get("missing").getAsInt());
+        assertEquals(1, json.get("errors").getAsInt());
+        assertTrue(json.get("elapsedMillis").getAsLong() >= 0);
+    }
+
+    @Test
+    void testMissingFilePolicyParsing() {
+        assertEquals(MissingFilePolicy.CREATE, MissingFilePolicy.fromString("create"));
+        assertEquals(MissingFilePolicy.FAIL, MissingFilePolicy.fromString(" FAIL "));
+        assertThrows(IllegalArgumentException.class, () -> MissingFilePolicy.fromString("maybe"));
+    }
+}
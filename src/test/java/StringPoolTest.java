@@ -0,0 +1,33 @@
+import com.icf.ecqm.structuredefinition.introgenerator.common.StringPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringPoolTest {
+
+    @AfterEach
+    void tearDown() {
+        StringPool.setEnabled(true);
+    }
+
+    @Test
+    void testIntern() {
+        String first = new String("testIntern: Business identifier");
+        String second = new String("testIntern: Business identifier");
+
+        assertSame(first, StringPool.intern(first));
+        assertSame(first, StringPool.intern(second));
+        assertNull(StringPool.intern(null));
+    }
+
+    @Test
+    void testDisabled() {
+        StringPool.setEnabled(false);
+        String first = new String("testDisabled: registered | preliminary | final");
+        String second = new String("testDisabled: registered | preliminary | final");
+
+        assertSame(first, StringPool.intern(first));
+        assertSame(second, StringPool.intern(second));
+    }
+}
@@ -0,0 +1,50 @@
+import com.icf.ecqm.structuredefinition.introgenerator.common.Utf8FileReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Utf8FileReaderTest {
+
+    @Test
+    void testReadsMultiByteTextAcrossBuffers(@TempDir Path tempDir) throws Exception {
+        //multi-byte and supplementary chars at every offset, well past one 64 KB read
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < 200_000; i++) {
+            text.append("\"short\": \"Patient's sex – gênero ✓ 😀 ").append(i).append("\",\n");
+        }
+        Path file = tempDir.resolve("profile.json");
+        Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(text.toString(), read(file, 8192));
+        assertEquals(text.toString(), read(file, 1));
+    }
+
+    @Test
+    void testReplacesMalformedInput(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("latin1.json");
+        Files.write(file, new byte[]{'a', (byte) 0xE9, 'b', (byte) 0xE2, (byte) 0x80});
+
+        assertEquals("a�b�", read(file, 8192));
+        Files.write(file, new byte[0]);
+        assertEquals("", read(file, 8192));
+    }
+
+    private static String read(Path file, int chunk) throws Exception {
+        StringWriter out = new StringWriter();
+        try (Reader reader = new Utf8FileReader(file.toFile())) {
+            char[] buffer = new char[chunk];
+            int read;
+            while ((read = reader.read(buffer, 0, chunk)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return out.toString();
+    }
+}